@@ -27,7 +27,6 @@ import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static jp.openstandia.connector.smarthr.SmartHRUtils.shouldReturn;
 
@@ -168,6 +167,11 @@ public class SchemaDefinition {
         }
 
         public SchemaDefinition build() {
+            // Resolve the value conversion for each type here, not on every call
+            for (AttributeMapper<?, ?, ?, ?> attribute : attributes) {
+                attribute.compile();
+            }
+
             SchemaDefinition schemaDefinition = new SchemaDefinition(objectClass, buildSchemaInfo(), buildAttributeMap());
             return schemaDefinition;
         }
@@ -269,6 +273,35 @@ public class SchemaDefinition {
         return returnedByDefaultAttributesSet;
     }
 
+    public boolean isFilterable(String name) {
+        return hasOption(name, SchemaOption.FILTERABLE);
+    }
+
+    public boolean isSortable(String name) {
+        if (name.equals(Uid.NAME) || name.equals(Name.NAME)) {
+            return attributeMap.containsKey(name);
+        }
+        return hasOption(name, SchemaOption.SORTABLE);
+    }
+
+    private boolean hasOption(String name, SchemaOption target) {
+        AttributeMapper<?, ?, ?, ?> attributeMapper = attributeMap.get(name);
+        if (attributeMapper == null) {
+            return false;
+        }
+        for (SchemaOption option : attributeMapper.options) {
+            if (option == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isCaseIgnore(String name) {
+        return objectClassInfo.getAttributeInfo().stream()
+                .anyMatch(i -> i.getName().equals(name) && AttributeInfo.Subtypes.STRING_CASE_IGNORE.toString().equals(i.getSubtype()));
+    }
+
     public String getFetchField(String name) {
         AttributeMapper attributeMapper = attributeMap.get(name);
         if (attributeMapper != null) {
@@ -303,29 +336,152 @@ public class SchemaDefinition {
         return changed;
     }
 
+    /**
+     * Compile the attributes to return into the plan which can be reused for all objects in the query.
+     *
+     * @param attributesToGet
+     * @return
+     */
+    public ProjectionPlan createProjectionPlan(Set<String> attributesToGet) {
+        List<AttributeMapper<?, ?, ?, ?>> mappers = new ArrayList<>();
+        for (Map.Entry<String, AttributeMapper> entry : attributeMap.entrySet()) {
+            String attrName = entry.getKey();
+            // __UID__ and __NAME__ are always returned
+            if (attrName.equals(Uid.NAME) || attrName.equals(Name.NAME)) {
+                continue;
+            }
+            if (shouldReturn(attributesToGet, attrName, returnedByDefaultAttributesSet.containsKey(attrName))) {
+                mappers.add(entry.getValue());
+            }
+        }
+        return new ProjectionPlan(attributeMap.get(Uid.NAME), attributeMap.get(Name.NAME),
+                mappers.toArray(new AttributeMapper<?, ?, ?, ?>[0]));
+    }
+
+    /**
+     * Check if the deltas add or remove values of multi-valued attributes.
+     * Such deltas need the current values because SmartHR replaces all values by PATCH.
+     *
+     * @param deltas
+     * @return
+     */
+    public boolean hasMultiValuedAddOrRemove(Set<AttributeDelta> deltas) {
+        for (AttributeDelta delta : deltas) {
+            AttributeMapper<?, ?, ?, ?> attributeMapper = attributeMap.get(delta.getName());
+            if (attributeMapper == null || !attributeMapper.isMultiple) {
+                continue;
+            }
+            if (isNotEmpty(delta.getValuesToAdd()) || isNotEmpty(delta.getValuesToRemove())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the deltas don't change the current object.
+     *
+     * @param deltas
+     * @param current
+     * @return true if the update can be skipped
+     */
+    @SuppressWarnings("unchecked")
+    public <R> boolean isNoOp(Set<AttributeDelta> deltas, R current) {
+        for (AttributeDelta delta : deltas) {
+            AttributeMapper<?, ?, ?, R> attributeMapper = attributeMap.get(delta.getName());
+            if (attributeMapper == null) {
+                throw new InvalidAttributeValueException("Invalid attribute: " + delta.getName());
+            }
+            if (attributeMapper.read == null) {
+                // Can't compare with write-only attribute
+                return false;
+            }
+
+            Attribute currentAttr = attributeMapper.apply(current);
+            Set<Object> currentValues = normalize(currentAttr != null ? currentAttr.getValue() : null);
+
+            // No values means replacing with empty
+            if (delta.getValuesToReplace() != null || (delta.getValuesToAdd() == null && delta.getValuesToRemove() == null)) {
+                if (!currentValues.equals(normalize(delta.getValuesToReplace()))) {
+                    return false;
+                }
+                continue;
+            }
+            if (!currentValues.containsAll(normalize(delta.getValuesToAdd()))) {
+                return false;
+            }
+            for (Object value : normalize(delta.getValuesToRemove())) {
+                if (currentValues.contains(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static Set<Object> normalize(List<Object> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Object> normalized = new HashSet<>();
+        for (Object value : values) {
+            if (value instanceof ZonedDateTime) {
+                // Ignore the difference of the zone
+                normalized.add(((ZonedDateTime) value).toInstant());
+            } else if (value instanceof BigDecimal) {
+                normalized.add(((BigDecimal) value).stripTrailingZeros());
+            } else if (value != null) {
+                normalized.add(value);
+            }
+        }
+        return normalized;
+    }
+
+    private static boolean isNotEmpty(List<Object> values) {
+        return values != null && !values.isEmpty();
+    }
+
     public <R> ConnectorObjectBuilder toConnectorObjectBuilder(R source, Set<String> attributesToGet, boolean allowPartialAttributeValues) {
+        return toConnectorObjectBuilder(source, createProjectionPlan(attributesToGet), allowPartialAttributeValues);
+    }
+
+    public <R> ConnectorObjectBuilder toConnectorObjectBuilder(R source, ProjectionPlan plan, boolean allowPartialAttributeValues) {
         final ConnectorObjectBuilder builder = new ConnectorObjectBuilder()
                 .setObjectClass(objectClass);
 
-        AttributeMapper uid = attributeMap.get(Uid.NAME);
-        builder.addAttribute(uid.apply(source));
+        builder.addAttribute(read(plan.uid, source));
 
         // Need to set __NAME__ because it throws IllegalArgumentException
-        AttributeMapper name = attributeMap.get(Name.NAME);
-        builder.addAttribute(name.apply(source));
+        builder.addAttribute(read(plan.name, source));
 
-        for (Map.Entry<String, AttributeMapper> entry : attributeMap.entrySet()) {
-            if (shouldReturn(attributesToGet, entry.getKey(), returnedByDefaultAttributesSet.containsKey(entry.getKey()))) {
-                Attribute value = entry.getValue().apply(source);
-                if (value != null) {
-                    builder.addAttribute(value);
-                }
+        for (AttributeMapper<?, ?, ?, ?> mapper : plan.mappers) {
+            Attribute value = read(mapper, source);
+            if (value != null) {
+                builder.addAttribute(value);
             }
         }
 
         return builder;
     }
 
+    @SuppressWarnings("unchecked")
+    private static <R> Attribute read(AttributeMapper<?, ?, ?, ?> mapper, R source) {
+        // The mappers of the schema read the same type
+        return ((AttributeMapper<?, ?, ?, R>) mapper).apply(source);
+    }
+
+    public static class ProjectionPlan {
+        private final AttributeMapper<?, ?, ?, ?> uid;
+        private final AttributeMapper<?, ?, ?, ?> name;
+        private final AttributeMapper<?, ?, ?, ?>[] mappers;
+
+        ProjectionPlan(AttributeMapper<?, ?, ?, ?> uid, AttributeMapper<?, ?, ?, ?> name, AttributeMapper<?, ?, ?, ?>[] mappers) {
+            this.uid = uid;
+            this.name = name;
+            this.mappers = mappers;
+        }
+    }
+
     public String getType() {
         return objectClassInfo.getType();
     }
@@ -366,6 +522,10 @@ public class SchemaDefinition {
         NOT_UPDATABLE,
         NOT_READABLE,
         NOT_RETURN_BY_DEFAULT,
+        // SmartHR list API supports exact match by the query parameter of the fetch field
+        FILTERABLE,
+        // SmartHR list API supports sorting by the fetch field
+        SORTABLE,
     }
 
     static class AttributeMapper<T, C, U, R> {
@@ -387,6 +547,8 @@ public class SchemaDefinition {
         private DateTimeFormatter dateFormat;
         private DateTimeFormatter dateTimeFormat;
 
+        private ValueConverter converter = IDENTITY_CONVERTER;
+
         private static final DateTimeFormatter DEFAULT_DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
         private static final DateTimeFormatter DEFAULT_DATE_TIME_FORMAT = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
 
@@ -444,12 +606,6 @@ public class SchemaDefinition {
             this.isMultiple = isMultiple;
         }
 
-        public boolean isStringType() {
-            return type == Types.STRING || type == Types.STRING_URI || type == Types.STRING_LDAP_DN ||
-                    type == Types.STRING_LDAP_DN || type == Types.STRING_CASE_IGNORE || type == Types.XML ||
-                    type == Types.JSON || type == Types.UUID;
-        }
-
         public AttributeMapper dateFormat(DateTimeFormatter dateFormat) {
             this.dateFormat = dateFormat;
             return this;
@@ -471,27 +627,59 @@ public class SchemaDefinition {
             if (this.dateTimeFormat == null) {
                 return zonedDateTime.format(DEFAULT_DATE_TIME_FORMAT);
             }
-            return zonedDateTime.format(this.dateFormat);
+            return zonedDateTime.format(this.dateTimeFormat);
         }
 
         private ZonedDateTime toDate(String dateString) {
-            LocalDate date;
             if (this.dateFormat == null) {
-                date = LocalDate.parse(dateString, DEFAULT_DATE_FORMAT);
-            } else {
-                date = LocalDate.parse(dateString, this.dateFormat);
+                return SmartHRUtils.toZoneDateTime(dateString);
             }
+            LocalDate date = LocalDate.parse(dateString, this.dateFormat);
             return date.atStartOfDay(ZoneId.systemDefault());
         }
 
         private ZonedDateTime toDateTime(String dateTimeString) {
-            ZonedDateTime dateTime;
             if (this.dateTimeFormat == null) {
-                dateTime = ZonedDateTime.parse(dateTimeString, DEFAULT_DATE_TIME_FORMAT);
+                return SmartHRUtils.toZonedDateTimeFromISO(dateTimeString);
+            }
+            return ZonedDateTime.parse(dateTimeString, this.dateTimeFormat);
+        }
+
+        void compile() {
+            if (type == Types.STRING || type == Types.STRING_CASE_IGNORE || type == Types.STRING_URI ||
+                    type == Types.STRING_LDAP_DN || type == Types.XML || type == Types.JSON || type == Types.UUID) {
+                converter = STRING_CONVERTER;
+
+            } else if (type == Types.DATE_STRING) {
+                converter = new ValueConverter() {
+                    @Override
+                    public Object toResourceValue(Object value) {
+                        return value != null ? formatDate((ZonedDateTime) value) : null;
+                    }
+
+                    @Override
+                    public Object toConnectorValue(Object value) {
+                        return toDate(value.toString());
+                    }
+                };
+
+            } else if (type == Types.DATETIME_STRING) {
+                converter = new ValueConverter() {
+                    @Override
+                    public Object toResourceValue(Object value) {
+                        return value != null ? formatDateTime((ZonedDateTime) value) : null;
+                    }
+
+                    @Override
+                    public Object toConnectorValue(Object value) {
+                        return toDateTime(value.toString());
+                    }
+                };
+
             } else {
-                dateTime = ZonedDateTime.parse(dateTimeString, this.dateTimeFormat);
+                // INTEGER, LONG, FLOAT, DOUBLE, BOOLEAN, BIG_DECIMAL, DATE and DATETIME are passed as is
+                converter = IDENTITY_CONVERTER;
             }
-            return dateTime;
         }
 
         public void apply(Attribute source, C dest) {
@@ -500,69 +688,16 @@ public class SchemaDefinition {
             }
 
             if (isMultiple) {
-                if (type == Types.DATE_STRING) {
-                    List<T> values = source.getValue().stream()
-                            .map(v -> (ZonedDateTime) v)
-                            .map(v -> (T) formatDate(v))
-                            .collect(Collectors.toList());
-                    create.accept((T) values, dest);
-
-                } else if (type == Types.DATETIME_STRING) {
-                    List<T> values = source.getValue().stream()
-                            .map(v -> (ZonedDateTime) v)
-                            .map(v -> (T) formatDateTime(v))
-                            .collect(Collectors.toList());
-                    create.accept((T) values, dest);
-
-                } else {
-                    List<T> values = source.getValue().stream().map(v -> (T) v).collect(Collectors.toList());
-                    create.accept((T) values, dest);
+                List<Object> sourceValues = source.getValue();
+                List<T> values = new ArrayList<>(sourceValues.size());
+                for (Object v : sourceValues) {
+                    values.add((T) converter.toResourceValue(v));
                 }
+                create.accept((T) values, dest);
 
             } else {
-                if (isStringType()) {
-                    String value = AttributeUtil.getAsStringValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.INTEGER) {
-                    Integer value = AttributeUtil.getIntegerValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.LONG) {
-                    Long value = AttributeUtil.getLongValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.FLOAT) {
-                    Float value = AttributeUtil.getFloatValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.DOUBLE) {
-                    Double value = AttributeUtil.getDoubleValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.BOOLEAN) {
-                    Boolean value = AttributeUtil.getBooleanValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.BIG_DECIMAL) {
-                    BigDecimal value = AttributeUtil.getBigDecimalValue(source);
-                    create.accept((T) value, dest);
-
-                } else if (type == Types.DATE || type == Types.DATETIME) {
-                    ZonedDateTime date = (ZonedDateTime) AttributeUtil.getSingleValue(source);
-                    String formatted = formatDate(date);
-                    create.accept((T) formatted, dest);
-
-                } else if (type == Types.DATE_STRING) {
-                    ZonedDateTime date = (ZonedDateTime) AttributeUtil.getSingleValue(source);
-                    String formatted = formatDate(date);
-                    create.accept((T) formatted, dest);
-
-                } else if (type == Types.DATETIME_STRING) {
-                    ZonedDateTime date = (ZonedDateTime) AttributeUtil.getSingleValue(source);
-                    String formatted = formatDateTime(date);
-                    create.accept((T) formatted, dest);
-                }
+                Object value = AttributeUtil.getSingleValue(source);
+                create.accept((T) converter.toResourceValue(value), dest);
             }
         }
 
@@ -572,50 +707,14 @@ public class SchemaDefinition {
                     return;
                 }
 
-                if (type == Types.DATE_STRING) {
-                    List<T> valuesToAdd = safeStream(source.getValuesToAdd())
-                            .map(v -> (ZonedDateTime) v)
-                            .map(v -> (T) formatDate(v))
-                            .collect(Collectors.toList());
-                    List<T> valuesToRemove = safeStream(source.getValuesToRemove())
-                            .map(v -> (ZonedDateTime) v)
-                            .map(v -> (T) formatDate(v))
-                            .collect(Collectors.toList());
-
-                    if (!valuesToAdd.isEmpty()) {
-                        add.accept(valuesToAdd, dest);
-                    }
-                    if (!valuesToRemove.isEmpty()) {
-                        remove.accept(valuesToRemove, dest);
-                    }
-
-                } else if (type == Types.DATETIME_STRING) {
-                    List<T> valuesToAdd = safeStream(source.getValuesToAdd())
-                            .map(v -> (ZonedDateTime) v)
-                            .map(v -> (T) formatDateTime(v))
-                            .collect(Collectors.toList());
-                    List<T> valuesToRemove = safeStream(source.getValuesToRemove())
-                            .map(v -> (ZonedDateTime) v)
-                            .map(v -> (T) formatDateTime(v))
-                            .collect(Collectors.toList());
-
-                    if (!valuesToAdd.isEmpty()) {
-                        add.accept(valuesToAdd, dest);
-                    }
-                    if (!valuesToRemove.isEmpty()) {
-                        remove.accept(valuesToRemove, dest);
-                    }
-
-                } else {
-                    List<T> valuesToAdd = safeStream(source.getValuesToAdd()).map(v -> (T) v).collect(Collectors.toList());
-                    List<T> valuesToRemove = safeStream(source.getValuesToRemove()).map(v -> (T) v).collect(Collectors.toList());
+                List<T> valuesToAdd = toResourceValues(source.getValuesToAdd());
+                List<T> valuesToRemove = toResourceValues(source.getValuesToRemove());
 
-                    if (!valuesToAdd.isEmpty()) {
-                        add.accept(valuesToAdd, dest);
-                    }
-                    if (!valuesToRemove.isEmpty()) {
-                        remove.accept(valuesToRemove, dest);
-                    }
+                if (!valuesToAdd.isEmpty()) {
+                    add.accept(valuesToAdd, dest);
+                }
+                if (!valuesToRemove.isEmpty()) {
+                    remove.accept(valuesToRemove, dest);
                 }
 
             } else {
@@ -623,48 +722,8 @@ public class SchemaDefinition {
                     return;
                 }
 
-                if (isStringType()) {
-                    String value = AttributeDeltaUtil.getAsStringValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.INTEGER) {
-                    Integer value = AttributeDeltaUtil.getIntegerValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.LONG) {
-                    Long value = AttributeDeltaUtil.getLongValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.FLOAT) {
-                    Float value = AttributeDeltaUtil.getFloatValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.DOUBLE) {
-                    Double value = AttributeDeltaUtil.getDoubleValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.BOOLEAN) {
-                    Boolean value = AttributeDeltaUtil.getBooleanValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.BIG_DECIMAL) {
-                    BigDecimal value = AttributeDeltaUtil.getBigDecimalValue(source);
-                    replace.accept((T) value, dest);
-
-                } else if (type == Types.DATE || type == Types.DATETIME) {
-                    ZonedDateTime date = (ZonedDateTime) AttributeDeltaUtil.getSingleValue(source);
-                    replace.accept((T) date, dest);
-
-                } else if (type == Types.DATE_STRING) {
-                    ZonedDateTime date = (ZonedDateTime) AttributeDeltaUtil.getSingleValue(source);
-                    String formatted = formatDate(date);
-                    replace.accept((T) formatted, dest);
-
-                } else if (type == Types.DATETIME_STRING) {
-                    ZonedDateTime date = (ZonedDateTime) AttributeDeltaUtil.getSingleValue(source);
-                    String formatted = formatDateTime(date);
-                    replace.accept((T) formatted, dest);
-                }
+                Object value = AttributeDeltaUtil.getSingleValue(source);
+                replace.accept((T) converter.toResourceValue(value), dest);
             }
         }
 
@@ -679,42 +738,60 @@ public class SchemaDefinition {
             }
 
             if (isMultiple) {
-                if (type == Types.DATE_STRING) {
-                    List<ZonedDateTime> values = ((List<?>) value).stream()
-                            .map(v -> (String) v)
-                            .map(v -> toDate(v))
-                            .collect(Collectors.toList());
-                    return AttributeBuilder.build(connectorName, values);
-
-                } else if (type == Types.DATETIME_STRING) {
-                    List<ZonedDateTime> values = ((List<?>) value).stream()
-                            .map(v -> (String) v)
-                            .map(v -> toDateTime(v))
-                            .collect(Collectors.toList());
-                    return AttributeBuilder.build(connectorName, values);
-
-                } else {
-                    return AttributeBuilder.build(connectorName, (List<?>) value);
+                List<?> sourceValues = (List<?>) value;
+                List<Object> values = new ArrayList<>(sourceValues.size());
+                for (Object v : sourceValues) {
+                    values.add(converter.toConnectorValue(v));
                 }
+                return AttributeBuilder.build(connectorName, values);
 
             } else {
-                if (type == Types.DATE_STRING) {
-                    ZonedDateTime date = toDate(value.toString());
-                    return AttributeBuilder.build(connectorName, date);
-
-                } else if (type == Types.DATETIME_STRING) {
-                    ZonedDateTime dateTime = toDateTime(value.toString());
-                    return AttributeBuilder.build(connectorName, dateTime);
-                }
-                return AttributeBuilder.build(connectorName, value);
+                return AttributeBuilder.build(connectorName, converter.toConnectorValue(value));
             }
         }
 
-        private Stream<Object> safeStream(List<Object> list) {
-            if (list == null) {
-                return Collections.emptyList().stream();
+        private List<T> toResourceValues(List<Object> list) {
+            if (list == null || list.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<T> values = new ArrayList<>(list.size());
+            for (Object v : list) {
+                values.add((T) converter.toResourceValue(v));
             }
-            return list.stream();
+            return values;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Conversion between the connector value and the resource value, resolved per attribute type at build time.
+     */
+    interface ValueConverter {
+        Object toResourceValue(Object value);
+
+        Object toConnectorValue(Object value);
+    }
+
+    private static final ValueConverter IDENTITY_CONVERTER = new ValueConverter() {
+        @Override
+        public Object toResourceValue(Object value) {
+            return value;
+        }
+
+        @Override
+        public Object toConnectorValue(Object value) {
+            return value;
+        }
+    };
+
+    private static final ValueConverter STRING_CONVERTER = new ValueConverter() {
+        @Override
+        public Object toResourceValue(Object value) {
+            return value != null ? value.toString() : null;
+        }
+
+        @Override
+        public Object toConnectorValue(Object value) {
+            return value;
+        }
+    };
+}
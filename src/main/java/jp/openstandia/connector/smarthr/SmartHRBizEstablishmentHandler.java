@@ -182,8 +182,9 @@ public class SmartHRBizEstablishmentHandler implements SmartHRObjectHandler {
     @Override
     public int getAll(ResultsHandler resultsHandler, OperationOptions options,
                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-                      boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
-        return client.getBizEstablishments((crew) -> resultsHandler.handle(toConnectorObject(schema, crew, returnAttributesSet, allowPartialAttributeValues)),
-                options, fetchFieldsSet, pageSize, pageOffset);
+                      boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getBizEstablishments((crew) -> resultsHandler.handle(toConnectorObject(schema, crew, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, pageSize, pageOffset, scan);
     }
 }
@@ -0,0 +1,222 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorIOException;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Checkpoint of a full scan to resume it after a failure.
+ * It records the last completed page and the Name of the last delivered object in a file keyed by
+ * the instance name and the object class. When resumed, the last completed page is fetched again and the objects
+ * up to the last delivered one are skipped. If the last delivered object isn't found in the page because the data
+ * has been changed, the whole page is delivered again instead of missing objects.
+ */
+public class SmartHRCheckpoint implements ResultsHandler {
+
+    private static final Log LOGGER = Log.getLog(SmartHRCheckpoint.class);
+
+    // Operation option to resume the full scan from the checkpoint
+    public static final String RESUME_OPTION = "resume";
+
+    private final Path file;
+    private final ResultsHandler delegate;
+    private final Properties saved;
+
+    private String skipUntil;
+    private boolean resumed;
+    private final List<ConnectorObject> skipped = new ArrayList<>();
+    private String lastName;
+    private boolean stopped;
+
+    public static SmartHRCheckpoint start(SmartHRConfiguration configuration, String instanceName, ObjectClass objectClass,
+                                          OperationOptions options, ResultsHandler delegate) {
+        String owner = instanceName != null ? instanceName : configuration.getEndpointURL();
+        String fileName = (owner + "_" + objectClass.getObjectClassValue()).replaceAll("[^a-zA-Z0-9._-]", "_") + ".checkpoint";
+        Path file = Paths.get(configuration.getCheckpointDirectory(), fileName);
+
+        boolean resume = options.getOptions() != null && Boolean.TRUE.equals(options.getOptions().get(RESUME_OPTION));
+
+        return new SmartHRCheckpoint(file, resume ? load(file) : null, delegate);
+    }
+
+    SmartHRCheckpoint(Path file, Properties saved, ResultsHandler delegate) {
+        this.file = file;
+        this.saved = saved;
+        this.delegate = delegate;
+    }
+
+    private static Properties load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+            return props;
+        } catch (IOException e) {
+            // Broken file, start from the first page
+            LOGGER.warn(e, "Failed to load the checkpoint: {0}", file);
+            return null;
+        }
+    }
+
+    /**
+     * Decide the page to start the scan.
+     *
+     * @param sort "sort" parameter of the scan. The checkpoint is used only if it was recorded with the same sort
+     * @return 1 if it isn't resumed
+     */
+    public int getStartPage(String sort) {
+        if (saved == null || !Objects.equals(sort, saved.getProperty("sort"))) {
+            return 1;
+        }
+        try {
+            int page = Integer.parseInt(saved.getProperty("page"));
+            skipUntil = saved.getProperty("lastName");
+            resumed = true;
+            LOGGER.info("Resume the full scan from page {0}, after {1}", page, skipUntil);
+            return page;
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid checkpoint: {0}", file);
+            return 1;
+        }
+    }
+
+    /**
+     * @return true if the scan started from the checkpoint, not from the first object
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Page size recorded in the checkpoint. The page boundary must be the same as the interrupted scan.
+     *
+     * @param defaultPageSize used if it isn't resumed
+     */
+    public int getPageSize(int defaultPageSize) {
+        if (saved == null || saved.getProperty("pageSize") == null) {
+            return defaultPageSize;
+        }
+        try {
+            return Integer.parseInt(saved.getProperty("pageSize"));
+        } catch (NumberFormatException e) {
+            return defaultPageSize;
+        }
+    }
+
+    @Override
+    public boolean handle(ConnectorObject connectorObject) {
+        if (skipUntil != null) {
+            skipped.add(connectorObject);
+            if (skipUntil.equals(connectorObject.getName().getNameValue())) {
+                // Already delivered before the interruption
+                skipped.clear();
+                skipUntil = null;
+            }
+            return true;
+        }
+        return deliver(connectorObject);
+    }
+
+    private boolean deliver(ConnectorObject connectorObject) {
+        lastName = connectorObject.getName().getNameValue();
+        if (!delegate.handle(connectorObject)) {
+            stopped = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record that all objects in the page have been delivered.
+     *
+     * @return false if the scan should be stopped
+     */
+    public boolean pageCompleted(int pageNumber, int pageSize, String sort) {
+        if (skipUntil != null) {
+            LOGGER.info("The last delivered object {0} wasn't found in the resumed page. Deliver the whole page", skipUntil);
+            skipUntil = null;
+            for (ConnectorObject object : skipped) {
+                if (!deliver(object)) {
+                    skipped.clear();
+                    return false;
+                }
+            }
+            skipped.clear();
+        }
+        if (stopped) {
+            return false;
+        }
+
+        Properties props = new Properties();
+        props.setProperty("page", String.valueOf(pageNumber));
+        props.setProperty("pageSize", String.valueOf(pageSize));
+        if (sort != null) {
+            props.setProperty("sort", sort);
+        }
+        if (lastName != null) {
+            props.setProperty("lastName", lastName);
+        }
+        save(props);
+        return true;
+    }
+
+    /**
+     * Remove the checkpoint if the full scan has completed.
+     */
+    public void complete() {
+        if (stopped) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new ConnectorIOException("Failed to remove the checkpoint: " + file, e);
+        }
+    }
+
+    private void save(Properties props) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, null);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            throw new ConnectorIOException("Failed to save the checkpoint: " + file, e);
+        }
+    }
+}
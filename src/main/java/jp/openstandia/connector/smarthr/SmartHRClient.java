@@ -15,6 +15,7 @@
  */
 package jp.openstandia.connector.smarthr;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import org.identityconnectors.framework.common.exceptions.AlreadyExistsException;
@@ -22,7 +23,9 @@ import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.Uid;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface SmartHRClient {
@@ -116,6 +119,12 @@ public interface SmartHRClient {
 
     int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset);
 
+    default int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> fetchFieldsSet, Map<String, String> filters, String sort, int pageSize, int pageOffset) {
+        return getCrews(handler, options, fetchFieldsSet, filters, sort, pageSize, pageOffset, null);
+    }
+
+    int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> fetchFieldsSet, Map<String, String> filters, String sort, int pageSize, int pageOffset, SmartHRFullScan scan);
+
     // Department
 
     Uid createDepartment(Department newCrew) throws AlreadyExistsException;
@@ -130,6 +139,12 @@ public interface SmartHRClient {
 
     int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset);
 
+    default int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> fetchFieldsSet, Map<String, String> filters, String sort, int pageSize, int pageOffset) {
+        return getDepartments(handler, options, fetchFieldsSet, filters, sort, pageSize, pageOffset, null);
+    }
+
+    int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> fetchFieldsSet, Map<String, String> filters, String sort, int pageSize, int pageOffset, SmartHRFullScan scan);
+
     // EmploymentType
 
     Uid createEmploymentType(EmploymentType newCrew) throws AlreadyExistsException;
@@ -142,7 +157,11 @@ public interface SmartHRClient {
 
     void deleteEmploymentType(Uid uid, OperationOptions options);
 
-    int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset);
+    default int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
+        return getEmploymentTypes(handler, options, fetchFieldsSet, pageSize, pageOffset, null);
+    }
+
+    int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan);
 
     // JobTitle
 
@@ -156,7 +175,11 @@ public interface SmartHRClient {
 
     void deleteJobTitle(Uid uid, OperationOptions options);
 
-    int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset);
+    default int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
+        return getJobTitles(handler, options, fetchFieldsSet, pageSize, pageOffset, null);
+    }
+
+    int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan);
 
     // Company
 
@@ -164,7 +187,11 @@ public interface SmartHRClient {
 
     Company getCompany(Name name, OperationOptions options, Set<String> fetchFieldsSet);
 
-    int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset);
+    default int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
+        return getCompanies(handler, options, fetchFieldsSet, pageSize, pageOffset, null);
+    }
+
+    int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan);
 
     // Biz Establishment
 
@@ -172,7 +199,11 @@ public interface SmartHRClient {
 
     BizEstablishment getBizEstablishment(Name name, OperationOptions options, Set<String> fetchFieldsSet);
 
-    int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset);
+    default int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
+        return getBizEstablishments(handler, options, fetchFieldsSet, pageSize, pageOffset, null);
+    }
+
+    int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan);
 
     // JSON Representation
 
@@ -213,6 +244,37 @@ public interface SmartHRClient {
         public List<Position> positions;
         public String occupation;
         public List<CustomField> custom_fields;
+
+        @JsonIgnore
+        private List<CustomField> indexedCustomFields;
+        @JsonIgnore
+        private Map<String, CustomField> customFieldIndex;
+
+        /**
+         * Find the custom field value by the template id.
+         * The custom fields are indexed in one pass on the first call and the index is shared by all custom attributes.
+         *
+         * @param templateId
+         * @return the custom field value or null if not found
+         */
+        public CustomField getCustomField(String templateId) {
+            if (custom_fields == null) {
+                return null;
+            }
+            if (customFieldIndex == null || indexedCustomFields != custom_fields) {
+                Map<String, CustomField> index = new HashMap<>(custom_fields.size() * 2);
+                for (CustomField f : custom_fields) {
+                    String id = f.template != null ? f.template.id : f.template_id;
+                    if (id != null) {
+                        // Keep the first one
+                        index.putIfAbsent(id, f);
+                    }
+                }
+                customFieldIndex = index;
+                indexedCustomFields = custom_fields;
+            }
+            return customFieldIndex.get(templateId);
+        }
     }
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -151,8 +151,9 @@ public class SmartHRCompanyHandler implements SmartHRObjectHandler {
     @Override
     public int getAll(ResultsHandler resultsHandler, OperationOptions options,
                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-                      boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
-        return client.getCompanies((company) -> resultsHandler.handle(toConnectorObject(schema, company, returnAttributesSet, allowPartialAttributeValues)),
-                options, fetchFieldsSet, pageSize, pageOffset);
+                      boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getCompanies((company) -> resultsHandler.handle(toConnectorObject(schema, company, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, pageSize, pageOffset, scan);
     }
 }
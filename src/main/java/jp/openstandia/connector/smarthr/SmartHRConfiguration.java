@@ -32,6 +32,25 @@ public class SmartHRConfiguration extends AbstractConfiguration {
     private int connectionTimeoutInSeconds = 10;
     private int readTimeoutInSeconds = 10;
     private int writeTimeoutInSeconds = 10;
+    private int prefetchPageCount = 0;
+    private boolean pipelinedSearch = false;
+    private int pipelineQueueSize = 100;
+    private int maxIdleConnections = 5;
+    private int keepAliveDurationInSeconds = 300;
+    private int maxRequestsPerHost = 5;
+    private int rateLimitPerSecond = 0;
+    private int maxRateLimitWaitInSeconds = 300;
+    private int retryMaxAttempts = 3;
+    private int retryBaseDelayInMillis = 500;
+    private int retryMaxDelayInMillis = 10000;
+    private int retryJitterInMillis = 250;
+    private int referenceCacheTTLInSeconds = 0;
+    private boolean suppressUnchangedObjects = false;
+    private String suppressUnchangedObjectsMode = SmartHRHashStore.MODE_FLAG;
+    private String hashStoreDirectory;
+    private boolean skipNoOpUpdates = false;
+    private boolean adaptivePageSize = false;
+    private String checkpointDirectory;
 
     @ConfigurationProperty(
             order = 1,
@@ -124,7 +143,8 @@ public class SmartHRConfiguration extends AbstractConfiguration {
     @ConfigurationProperty(
             order = 7,
             displayMessageKey = "Default Query Page Size",
-            helpMessageKey = "Number of results to return per page. (Default: 50)",
+            helpMessageKey = "Number of results to return per page. SmartHR returns up to 100 per page," +
+                    " so a larger value is clamped to 100 by SmartHR or the connector. (Default: 50)",
             required = false,
             confidential = false)
     public int getDefaultQueryPageSize() {
@@ -177,6 +197,300 @@ public class SmartHRConfiguration extends AbstractConfiguration {
         this.writeTimeoutInSeconds = writeTimeoutInSeconds;
     }
 
+    @ConfigurationProperty(
+            order = 11,
+            displayMessageKey = "Prefetch Page Count",
+            helpMessageKey = "Number of subsequent pages to fetch concurrently while the current page is processed" +
+                    " in full scan searches. 0 disables prefetching. (Default: 0)",
+            required = false,
+            confidential = false)
+    public int getPrefetchPageCount() {
+        return prefetchPageCount;
+    }
+
+    public void setPrefetchPageCount(int prefetchPageCount) {
+        this.prefetchPageCount = prefetchPageCount;
+    }
+
+    @ConfigurationProperty(
+            order = 12,
+            displayMessageKey = "Pipelined Search",
+            helpMessageKey = "If true, full scan searches run in a three-stage pipeline. A thread fetches the pages," +
+                    " another thread decodes and converts the objects, and they are delivered to IDM in the caller thread." +
+                    " Up to \"Prefetch Page Count\" (at least 1) fetched pages wait for the decoding, and the pages" +
+                    " aren't prefetched concurrently then. (Default: false)",
+            required = false,
+            confidential = false)
+    public boolean isPipelinedSearch() {
+        return pipelinedSearch;
+    }
+
+    public void setPipelinedSearch(boolean pipelinedSearch) {
+        this.pipelinedSearch = pipelinedSearch;
+    }
+
+    @ConfigurationProperty(
+            order = 13,
+            displayMessageKey = "Pipeline Queue Size",
+            helpMessageKey = "Maximum number of converted objects waiting for the delivery to IDM" +
+                    " when \"Pipelined Search\" is enabled. (Default: 100)",
+            required = false,
+            confidential = false)
+    public int getPipelineQueueSize() {
+        return pipelineQueueSize;
+    }
+
+    public void setPipelineQueueSize(int pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    @ConfigurationProperty(
+            order = 14,
+            displayMessageKey = "Max Idle Connections",
+            helpMessageKey = "Maximum number of idle connections kept in the connection pool." +
+                    " The pool is shared by the connector instances for the same SmartHR tenant. (Default: 5)",
+            required = false,
+            confidential = false)
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    @ConfigurationProperty(
+            order = 15,
+            displayMessageKey = "Keep Alive Duration (in seconds)",
+            helpMessageKey = "Time to keep an idle connection in the connection pool. (Default: 300)",
+            required = false,
+            confidential = false)
+    public int getKeepAliveDurationInSeconds() {
+        return keepAliveDurationInSeconds;
+    }
+
+    public void setKeepAliveDurationInSeconds(int keepAliveDurationInSeconds) {
+        this.keepAliveDurationInSeconds = keepAliveDurationInSeconds;
+    }
+
+    @ConfigurationProperty(
+            order = 16,
+            displayMessageKey = "Max Requests Per Host",
+            helpMessageKey = "Maximum number of concurrent asynchronous requests to SmartHR, e.g. prefetching pages." +
+                    " The limit is shared by the connector instances for the same SmartHR tenant. (Default: 5)",
+            required = false,
+            confidential = false)
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    @ConfigurationProperty(
+            order = 17,
+            displayMessageKey = "Rate Limit (requests per second)",
+            helpMessageKey = "Maximum number of requests per second to SmartHR. The requests over the limit are queued." +
+                    " The limit is shared by the connector instances for the same SmartHR tenant." +
+                    " 0 means unlimited, but the rate limit responses from SmartHR are still respected. (Default: 0)",
+            required = false,
+            confidential = false)
+    public int getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public void setRateLimitPerSecond(int rateLimitPerSecond) {
+        this.rateLimitPerSecond = rateLimitPerSecond;
+    }
+
+    @ConfigurationProperty(
+            order = 18,
+            displayMessageKey = "Max Rate Limit Wait (in seconds)",
+            helpMessageKey = "Maximum time to wait and retry a request rejected by the SmartHR API rate limit (HTTP 429)." +
+                    " (Default: 300)",
+            required = false,
+            confidential = false)
+    public int getMaxRateLimitWaitInSeconds() {
+        return maxRateLimitWaitInSeconds;
+    }
+
+    public void setMaxRateLimitWaitInSeconds(int maxRateLimitWaitInSeconds) {
+        this.maxRateLimitWaitInSeconds = maxRateLimitWaitInSeconds;
+    }
+
+    @ConfigurationProperty(
+            order = 19,
+            displayMessageKey = "Retry Max Attempts",
+            helpMessageKey = "Maximum number of attempts for a request failed by a transient error," +
+                    " e.g. HTTP 5xx, timeout or connection reset. Only the requests which are safe to retry are retried." +
+                    " 1 disables the retry. (Default: 3)",
+            required = false,
+            confidential = false)
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    @ConfigurationProperty(
+            order = 20,
+            displayMessageKey = "Retry Base Delay (in milliseconds)",
+            helpMessageKey = "Delay before the first retry. The delay is doubled on each retry. (Default: 500)",
+            required = false,
+            confidential = false)
+    public int getRetryBaseDelayInMillis() {
+        return retryBaseDelayInMillis;
+    }
+
+    public void setRetryBaseDelayInMillis(int retryBaseDelayInMillis) {
+        this.retryBaseDelayInMillis = retryBaseDelayInMillis;
+    }
+
+    @ConfigurationProperty(
+            order = 21,
+            displayMessageKey = "Retry Max Delay (in milliseconds)",
+            helpMessageKey = "Upper limit of the delay between the retries. (Default: 10000)",
+            required = false,
+            confidential = false)
+    public int getRetryMaxDelayInMillis() {
+        return retryMaxDelayInMillis;
+    }
+
+    public void setRetryMaxDelayInMillis(int retryMaxDelayInMillis) {
+        this.retryMaxDelayInMillis = retryMaxDelayInMillis;
+    }
+
+    @ConfigurationProperty(
+            order = 22,
+            displayMessageKey = "Retry Jitter (in milliseconds)",
+            helpMessageKey = "Upper limit of the random time added to each retry delay. (Default: 250)",
+            required = false,
+            confidential = false)
+    public int getRetryJitterInMillis() {
+        return retryJitterInMillis;
+    }
+
+    public void setRetryJitterInMillis(int retryJitterInMillis) {
+        this.retryJitterInMillis = retryJitterInMillis;
+    }
+
+    @ConfigurationProperty(
+            order = 23,
+            displayMessageKey = "Reference Cache TTL (in seconds)",
+            helpMessageKey = "Time to live of the cached employment_type, job_title, company and biz_establishment objects" +
+                    " used for the lookup by ID or name. The cache is also refreshed when the connector modifies them," +
+                    " or when the lookup doesn't find the object (at most once per 5 seconds)." +
+                    " 0 disables the cache. (Default: 0)",
+            required = false,
+            confidential = false)
+    public int getReferenceCacheTTLInSeconds() {
+        return referenceCacheTTLInSeconds;
+    }
+
+    public void setReferenceCacheTTLInSeconds(int referenceCacheTTLInSeconds) {
+        this.referenceCacheTTLInSeconds = referenceCacheTTLInSeconds;
+    }
+
+    @ConfigurationProperty(
+            order = 24,
+            displayMessageKey = "Suppress Unchanged Objects",
+            helpMessageKey = "If true, full scan searches detect the objects which haven't been changed since the previous" +
+                    " completed full scan, by comparing the hashes of the returned attributes." +
+                    " See Suppress Unchanged Objects Mode for how they are returned. (Default: false)",
+            required = false,
+            confidential = false)
+    public boolean isSuppressUnchangedObjects() {
+        return suppressUnchangedObjects;
+    }
+
+    public void setSuppressUnchangedObjects(boolean suppressUnchangedObjects) {
+        this.suppressUnchangedObjects = suppressUnchangedObjects;
+    }
+
+    @ConfigurationProperty(
+            order = 25,
+            displayMessageKey = "Hash Store Directory",
+            helpMessageKey = "Directory to save the hashes for Suppress Unchanged Objects." +
+                    " If empty, they are kept in memory only and lost when the connector is restarted.",
+            required = false,
+            confidential = false)
+    public String getHashStoreDirectory() {
+        return hashStoreDirectory;
+    }
+
+    public void setHashStoreDirectory(String hashStoreDirectory) {
+        this.hashStoreDirectory = hashStoreDirectory;
+    }
+
+    @ConfigurationProperty(
+            order = 26,
+            displayMessageKey = "Skip No-op Updates",
+            helpMessageKey = "If true, the connector compares the update with the current object and skips the update" +
+                    " if nothing is changed. It's compared only when the current object is fetched anyway," +
+                    " that is the crew update which adds or removes values of multi-valued attributes. (Default: false)",
+            required = false,
+            confidential = false)
+    public boolean isSkipNoOpUpdates() {
+        return skipNoOpUpdates;
+    }
+
+    public void setSkipNoOpUpdates(boolean skipNoOpUpdates) {
+        this.skipNoOpUpdates = skipNoOpUpdates;
+    }
+
+    @ConfigurationProperty(
+            order = 27,
+            displayMessageKey = "Adaptive Page Size",
+            helpMessageKey = "If true, full scans grow or shrink the page size up to 100 from the response latency" +
+                    " and the response size per object, starting from Default Query Page Size." +
+                    " It isn't used when Prefetch Page Count is set. (Default: false)",
+            required = false,
+            confidential = false)
+    public boolean isAdaptivePageSize() {
+        return adaptivePageSize;
+    }
+
+    public void setAdaptivePageSize(boolean adaptivePageSize) {
+        this.adaptivePageSize = adaptivePageSize;
+    }
+
+    @ConfigurationProperty(
+            order = 28,
+            displayMessageKey = "Checkpoint Directory",
+            helpMessageKey = "Directory to save the checkpoints of full scans. If set, full scans record the last completed" +
+                    " page, and a search with \"resume\" operation option restarts from it. Pipelined Search," +
+                    " Prefetch Page Count and Adaptive Page Size aren't used for the full scans then.",
+            required = false,
+            confidential = false)
+    public String getCheckpointDirectory() {
+        return checkpointDirectory;
+    }
+
+    public void setCheckpointDirectory(String checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    @ConfigurationProperty(
+            order = 29,
+            displayMessageKey = "Suppress Unchanged Objects Mode",
+            helpMessageKey = "How Suppress Unchanged Objects returns the unchanged objects." +
+                    " \"flag\" returns all objects, with the \"unchanged\" boolean attribute if it's requested in attributes to get." +
+                    " It's safe for reconciliation." +
+                    " \"skip\" doesn't return the unchanged objects. Don't use it for reconciliation" +
+                    " because it treats the skipped objects as deleted. (Default: flag)",
+            required = false,
+            confidential = false)
+    public String getSuppressUnchangedObjectsMode() {
+        return suppressUnchangedObjectsMode;
+    }
+
+    public void setSuppressUnchangedObjectsMode(String suppressUnchangedObjectsMode) {
+        this.suppressUnchangedObjectsMode = suppressUnchangedObjectsMode;
+    }
+
     @Override
     public void validate() {
         if (endpointURL == null) {
@@ -185,5 +499,39 @@ public class SmartHRConfiguration extends AbstractConfiguration {
         if (apiAccessToken == null) {
             throw new ConfigurationException("SmartHR API Password is required");
         }
+        if (prefetchPageCount < 0) {
+            throw new ConfigurationException("Prefetch Page Count must be 0 or greater");
+        }
+        if (pipelineQueueSize < 1) {
+            throw new ConfigurationException("Pipeline Queue Size must be 1 or greater");
+        }
+        if (maxIdleConnections < 0) {
+            throw new ConfigurationException("Max Idle Connections must be 0 or greater");
+        }
+        if (keepAliveDurationInSeconds < 1) {
+            throw new ConfigurationException("Keep Alive Duration must be 1 or greater");
+        }
+        if (maxRequestsPerHost < 1) {
+            throw new ConfigurationException("Max Requests Per Host must be 1 or greater");
+        }
+        if (rateLimitPerSecond < 0) {
+            throw new ConfigurationException("Rate Limit must be 0 or greater");
+        }
+        if (maxRateLimitWaitInSeconds < 0) {
+            throw new ConfigurationException("Max Rate Limit Wait must be 0 or greater");
+        }
+        if (retryMaxAttempts < 1) {
+            throw new ConfigurationException("Retry Max Attempts must be 1 or greater");
+        }
+        if (retryBaseDelayInMillis < 0 || retryMaxDelayInMillis < 0 || retryJitterInMillis < 0) {
+            throw new ConfigurationException("Retry delays must be 0 or greater");
+        }
+        if (referenceCacheTTLInSeconds < 0) {
+            throw new ConfigurationException("Reference Cache TTL must be 0 or greater");
+        }
+        if (!SmartHRHashStore.MODE_FLAG.equals(suppressUnchangedObjectsMode)
+                && !SmartHRHashStore.MODE_SKIP.equals(suppressUnchangedObjectsMode)) {
+            throw new ConfigurationException("Suppress Unchanged Objects Mode must be flag or skip");
+        }
     }
 }
@@ -15,7 +15,11 @@
  */
 package jp.openstandia.connector.smarthr;
 
+import jp.openstandia.connector.smarthr.rest.SmartHRHttpClientRegistry;
 import jp.openstandia.connector.smarthr.rest.SmartHRRESTClient;
+import jp.openstandia.connector.smarthr.rest.SmartHRRateLimitInterceptor;
+import jp.openstandia.connector.smarthr.rest.SmartHRRateLimiter;
+import jp.openstandia.connector.smarthr.rest.SmartHRRetryInterceptor;
 import okhttp3.*;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
@@ -27,18 +31,16 @@ import org.identityconnectors.framework.spi.*;
 import org.identityconnectors.framework.spi.operations.*;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static jp.openstandia.connector.smarthr.SmartHRUtils.*;
 
 @ConnectorClass(configurationClass = SmartHRConfiguration.class, displayNameKey = "SmartHR Connector")
-public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDeltaOp, DeleteOp, SchemaOp, TestOp, SearchOp<SmartHRFilter>, InstanceNameAware {
+public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDeltaOp, DeleteOp, SchemaOp, TestOp, SearchOp<SmartHRFilter>, SyncOp, InstanceNameAware {
 
     private static final Log LOG = Log.getLog(SmartHRConnector.class);
 
@@ -67,17 +69,18 @@ public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDelt
     }
 
     protected void authenticateResource() {
-        OkHttpClient.Builder okHttpBuilder = new OkHttpClient.Builder();
-        okHttpBuilder.connectTimeout(configuration.getConnectionTimeoutInSeconds(), TimeUnit.SECONDS);
-        okHttpBuilder.readTimeout(configuration.getReadTimeoutInSeconds(), TimeUnit.SECONDS);
-        okHttpBuilder.writeTimeout(configuration.getWriteTimeoutInSeconds(), TimeUnit.SECONDS);
+        // Derive from the shared client to reuse the connection pool and the dispatcher
+        OkHttpClient.Builder okHttpBuilder = SmartHRHttpClientRegistry.getSharedClient(configuration).newBuilder();
+        // Each retry is also scheduled by the rate limiter
+        okHttpBuilder.addInterceptor(new SmartHRRetryInterceptor(configuration.getRetryMaxAttempts(),
+                configuration.getRetryBaseDelayInMillis(), configuration.getRetryMaxDelayInMillis(),
+                configuration.getRetryJitterInMillis()));
+        okHttpBuilder.addInterceptor(new SmartHRRateLimitInterceptor(SmartHRRateLimiter.getInstance(configuration),
+                configuration.getMaxRateLimitWaitInSeconds()));
         okHttpBuilder.addInterceptor(getInterceptor(configuration.getApiAccessToken()));
 
         // Setup http proxy aware httpClient
         if (StringUtil.isNotEmpty(configuration.getHttpProxyHost())) {
-            okHttpBuilder.proxy(new Proxy(Proxy.Type.HTTP,
-                    new InetSocketAddress(configuration.getHttpProxyHost(), configuration.getHttpProxyPort())));
-
             if (StringUtil.isNotEmpty(configuration.getHttpProxyUser()) && configuration.getHttpProxyPassword() != null) {
                 configuration.getHttpProxyPassword().access(c -> {
                     okHttpBuilder.proxyAuthenticator((Route route, Response response) -> {
@@ -195,7 +198,7 @@ public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDelt
 
     @Override
     public FilterTranslator<SmartHRFilter> createFilterTranslator(ObjectClass objectClass, OperationOptions options) {
-        return new SmartHRFilterTranslator(objectClass, options);
+        return new SmartHRFilterTranslator(objectClass, options, getSchemaHandler(objectClass).getSchema());
     }
 
     @Override
@@ -203,9 +206,25 @@ public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDelt
         SmartHRObjectHandler schemaHandler = getSchemaHandler(objectClass);
         SchemaDefinition schema = schemaHandler.getSchema();
 
+        if (isCountOnly(options) && (filter == null || filter.pushDown)) {
+            int total = schemaHandler.count(filter, options);
+
+            if (resultsHandler instanceof SearchResultsHandler) {
+                ((SearchResultsHandler) resultsHandler).handleResult(new SearchResult(null, total));
+            }
+            return;
+        }
+
         int pageSize = resolvePageSize(configuration, options);
         int pageOffset = resolvePageOffset(options);
 
+        // Each partition is a range of the pages of the full scan
+        boolean partitioned = isPartitioned(options);
+        if (partitioned && (filter != null || pageOffset > 0)) {
+            throw new InvalidAttributeValueException(String.format("%s and %s are supported only for the search without filter and paging",
+                    PARTITION_INDEX_OPTION, PARTITION_COUNT_OPTION));
+        }
+
         // Create full attributesToGet by RETURN_DEFAULT_ATTRIBUTES + ATTRIBUTES_TO_GET
         Map<String, String> attributesToGet = createFullAttributesToGet(schema, options);
         Set<String> returnAttributesSet = attributesToGet.keySet();
@@ -224,18 +243,67 @@ public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDelt
                 total = schemaHandler.getByName((Name) filter.attributeValue, resultsHandler, options,
                         returnAttributesSet, fetchFieldSet,
                         allowPartialAttributeValues, pageSize, pageOffset);
+            } else if (filter.isComposite()) {
+                total = new SmartHRQueryPlanner(schemaHandler).execute(filter, resultsHandler, options,
+                        returnAttributesSet, fetchFieldSet,
+                        allowPartialAttributeValues, pageSize, pageOffset);
+            } else if (filter.isByAttribute()) {
+                total = schemaHandler.getByFilter(filter, resultsHandler, options,
+                        returnAttributesSet, fetchFieldSet,
+                        allowPartialAttributeValues, pageSize, pageOffset);
             }
             // No result
         } else {
-            total = schemaHandler.getAll(resultsHandler, options,
-                    returnAttributesSet, fetchFieldSet,
-                    allowPartialAttributeValues, pageSize, pageOffset);
+            SmartHRHashStore.Scan scan = null;
+            ResultsHandler handler = resultsHandler;
+            // Each partition sees only a part of the objects, so the whole scan state can't be kept
+            if (configuration.isSuppressUnchangedObjects() && pageOffset == 0 && !partitioned) {
+                // The flag isn't returned by default, so add it only if requested
+                boolean flag = SmartHRHashStore.MODE_FLAG.equals(configuration.getSuppressUnchangedObjectsMode())
+                        && options.getAttributesToGet() != null
+                        && Arrays.asList(options.getAttributesToGet()).contains(SmartHRHashStore.UNCHANGED_ATTR);
+                scan = SmartHRHashStore.getInstance(configuration, instanceName, objectClass).startScan(resultsHandler, flag);
+                handler = scan;
+            }
+
+            if (StringUtil.isNotEmpty(configuration.getCheckpointDirectory()) && pageOffset == 0 && !partitioned) {
+                // The checkpoint must be recorded after the objects are delivered, so don't use the pipeline
+                SmartHRCheckpoint checkpoint = SmartHRCheckpoint.start(configuration, instanceName, objectClass, options, handler);
+                total = schemaHandler.getAll(checkpoint, options,
+                        returnAttributesSet, fetchFieldSet,
+                        allowPartialAttributeValues, pageSize, pageOffset, new SmartHRFullScan(checkpoint, 0, 1, 0));
+                checkpoint.complete();
+
+                if (scan != null && checkpoint.isResumed()) {
+                    // The resumed scan sees only the rest of the objects, so the hashes of the whole scan can't be kept
+                    scan.markPartial();
+                }
+
+            } else if (configuration.isPipelinedSearch()) {
+                // Fetch the pages in another stage of the pipeline
+                SmartHRFullScan fullScan = new SmartHRFullScan(null, resolvePartitionIndex(options), resolvePartitionCount(options),
+                        Math.max(1, configuration.getPrefetchPageCount()));
+                SmartHRSearchPipeline pipeline = new SmartHRSearchPipeline(configuration.getPipelineQueueSize());
+                total = pipeline.execute(handler, (pipelineHandler) -> schemaHandler.getAll(pipelineHandler, options,
+                        returnAttributesSet, fetchFieldSet,
+                        allowPartialAttributeValues, pageSize, pageOffset, fullScan));
+            } else {
+                SmartHRFullScan fullScan = new SmartHRFullScan(null, resolvePartitionIndex(options), resolvePartitionCount(options), 0);
+                total = schemaHandler.getAll(handler, options,
+                        returnAttributesSet, fetchFieldSet,
+                        allowPartialAttributeValues, pageSize, pageOffset, fullScan);
+            }
+
+            if (scan != null) {
+                scan.complete();
+            }
         }
 
         if (resultsHandler instanceof SearchResultsHandler &&
                 pageOffset > 0) {
 
-            int remaining = total - (pageSize * pageOffset);
+            // ConnId offset is 1-based index of the first object in the page
+            int remaining = Math.max(0, total - (pageOffset - 1) - pageSize);
 
             SearchResultsHandler searchResultsHandler = (SearchResultsHandler) resultsHandler;
             SearchResult searchResult = new SearchResult(null, remaining);
@@ -243,6 +311,36 @@ public class SmartHRConnector implements PoolableConnector, CreateOp, UpdateDelt
         }
     }
 
+    @Override
+    public void sync(ObjectClass objectClass, SyncToken token, SyncResultsHandler handler, OperationOptions options) {
+        try {
+            SmartHRObjectHandler schemaHandler = getSchemaHandler(objectClass);
+            SchemaDefinition schema = schemaHandler.getSchema();
+
+            // Create full attributesToGet by RETURN_DEFAULT_ATTRIBUTES + ATTRIBUTES_TO_GET
+            Map<String, String> attributesToGet = createFullAttributesToGet(schema, options);
+            Set<String> returnAttributesSet = attributesToGet.keySet();
+            Set<String> fetchFieldSet = attributesToGet.values().stream().collect(Collectors.toSet());
+
+            boolean allowPartialAttributeValues = shouldAllowPartialAttributeValues(options);
+
+            schemaHandler.sync(token, handler, options, returnAttributesSet, fetchFieldSet, allowPartialAttributeValues);
+
+        } catch (RuntimeException e) {
+            throw processRuntimeException(e);
+        }
+    }
+
+    @Override
+    public SyncToken getLatestSyncToken(ObjectClass objectClass) {
+        try {
+            return getSchemaHandler(objectClass).getLatestSyncToken(null);
+
+        } catch (RuntimeException e) {
+            throw processRuntimeException(e);
+        }
+    }
+
     @Override
     public void test() {
         try {
@@ -28,6 +28,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static jp.openstandia.connector.smarthr.SchemaDefinition.SchemaOption.*;
+import static jp.openstandia.connector.smarthr.SmartHRUtils.recordSkippedUpdate;
+import static jp.openstandia.connector.smarthr.SmartHRUtils.resolveSort;
 import static jp.openstandia.connector.smarthr.SmartHRUtils.toZoneDateTime;
 
 public class SmartHRCrewHandler implements SmartHRObjectHandler {
@@ -163,7 +165,7 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                 null
         );
         sb.add("email",
-                SchemaDefinition.Types.STRING,
+                SchemaDefinition.Types.STRING_CASE_IGNORE,
                 SmartHRClient.Crew.class,
                 SmartHRClient.Crew.class,
                 (source, dest) -> dest.email = source,
@@ -179,7 +181,7 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                 (source, dest) -> dest.emp_status = source,
                 (source) -> source.emp_status,
                 null,
-                REQUIRED
+                REQUIRED, FILTERABLE
         );
         sb.add("entered_at",
                 SchemaDefinition.Types.DATE_STRING,
@@ -377,7 +379,7 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                 null,
                 (source) -> source.created_at,
                 null,
-                NOT_CREATABLE, NOT_UPDATABLE
+                NOT_CREATABLE, NOT_UPDATABLE, SORTABLE
         );
         sb.add("updated_at",
                 SchemaDefinition.Types.DATETIME_STRING,
@@ -386,7 +388,7 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                 null,
                 (source) -> source.updated_at,
                 null,
-                NOT_CREATABLE, NOT_UPDATABLE
+                NOT_CREATABLE, NOT_UPDATABLE, SORTABLE
         );
 
         // Custom Fields
@@ -408,11 +410,9 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                                 dest.custom_fields.add(value);
                             },
                             (source) -> {
-                                Optional<SmartHRClient.CustomField> value = source.custom_fields.stream()
-                                        .filter(f -> f.template.id.equals(field.id))
-                                        .findFirst();
-                                if (value.isPresent()) {
-                                    return value.get().value;
+                                SmartHRClient.CustomField value = source.getCustomField(field.id);
+                                if (value != null) {
+                                    return value.value;
                                 }
                                 return null;
                             },
@@ -431,11 +431,9 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                                 dest.custom_fields.add(value);
                             },
                             (source) -> {
-                                Optional<SmartHRClient.CustomField> value = source.custom_fields.stream()
-                                        .filter(f -> f.template.id.equals(field.id))
-                                        .findFirst();
-                                if (value.isPresent()) {
-                                    return new BigDecimal(value.get().value);
+                                SmartHRClient.CustomField value = source.getCustomField(field.id);
+                                if (value != null) {
+                                    return new BigDecimal(value.value);
                                 }
                                 return null;
                             },
@@ -454,11 +452,9 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
                                 dest.custom_fields.add(value);
                             },
                             (source) -> {
-                                Optional<SmartHRClient.CustomField> value = source.custom_fields.stream()
-                                        .filter(f -> f.template.id.equals(field.id))
-                                        .findFirst();
-                                if (value.isPresent()) {
-                                    return toZoneDateTime(value.get().value);
+                                SmartHRClient.CustomField value = source.getCustomField(field.id);
+                                if (value != null) {
+                                    return toZoneDateTime(value.value);
                                 }
                                 return null;
                             },
@@ -495,22 +491,32 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
 
     @Override
     public Set<AttributeDelta> updateDelta(Uid uid, Set<AttributeDelta> modifications, OperationOptions options) {
+        SmartHRClient.Crew dest = new SmartHRClient.Crew();
+
         // To apply diff for multiple values, we need to fetch the current object
-        SmartHRClient.Crew current = client.getCrew(uid, options, null);
+        if (schema.hasMultiValuedAddOrRemove(modifications)) {
+            SmartHRClient.Crew current = client.getCrew(uid, options, null);
 
-        if (current == null) {
-            throw new UnknownUidException(String.format("Not found crew. id: %s", uid.getUidValue()));
-        }
+            if (current == null) {
+                throw new UnknownUidException(String.format("Not found crew. id: %s", uid.getUidValue()));
+            }
 
-        SmartHRClient.Crew dest = new SmartHRClient.Crew();
-        if (current.departments == null) {
-            dest.department_ids = new ArrayList<>();
-        } else {
-            dest.department_ids = current.departments.stream().map(d -> d.id).collect(Collectors.toList());
+            // Compare only when we already have the current object, don't fetch it only for this
+            if (configuration.isSkipNoOpUpdates() && schema.isNoOp(modifications, current)) {
+                recordSkippedUpdate(schema, uid);
+                return null;
+            }
+
+            if (current.departments == null) {
+                dest.department_ids = new ArrayList<>();
+            } else {
+                dest.department_ids = current.departments.stream().map(d -> d.id).collect(Collectors.toList());
+            }
         }
 
         schema.applyDelta(modifications, dest);
 
+        // PATCH throws UnknownUidException if not found
         client.updateCrew(uid, dest);
 
         return null;
@@ -550,8 +556,48 @@ public class SmartHRCrewHandler implements SmartHRObjectHandler {
     @Override
     public int getAll(ResultsHandler resultsHandler, OperationOptions options,
                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-                      boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
-        return client.getCrews((crew) -> resultsHandler.handle(toConnectorObject(schema, crew, returnAttributesSet, allowPartialAttributeValues)),
-                options, fetchFieldsSet, pageSize, pageOffset);
+                      boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getCrews((crew) -> resultsHandler.handle(toConnectorObject(schema, crew, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, null, resolveSort(schema, options, "emp_code"), pageSize, pageOffset, scan);
+    }
+
+    @Override
+    public int getAllByQuery(ResultsHandler resultsHandler, OperationOptions options,
+                             Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                             boolean allowPartialAttributeValues, Map<String, String> queryParams,
+                             int pageSize, int pageOffset) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getCrews((crew) -> resultsHandler.handle(toConnectorObject(schema, crew, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, queryParams, resolveSort(schema, options, "emp_code"), pageSize, pageOffset);
+    }
+
+    @Override
+    public boolean isSyncSupported() {
+        return true;
+    }
+
+    @Override
+    public SyncToken getLatestSyncToken(OperationOptions options) {
+        return newSyncSupport(options, null).getLatestSyncToken();
+    }
+
+    @Override
+    public void sync(SyncToken token, SyncResultsHandler resultsHandler, OperationOptions options,
+                     Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                     boolean allowPartialAttributeValues) {
+        newSyncSupport(options, fetchFieldsSet).sync(token, resultsHandler, returnAttributesSet, allowPartialAttributeValues);
+    }
+
+    private SmartHRSyncSupport<SmartHRClient.Crew> newSyncSupport(OperationOptions options, Set<String> fetchFieldsSet) {
+        // Need updated_at for the sync token
+        Set<String> fields = new HashSet<>();
+        if (fetchFieldsSet != null) {
+            fields.addAll(fetchFieldsSet);
+        }
+        fields.add(SmartHRSyncSupport.UPDATED_AT);
+
+        return new SmartHRSyncSupport<>(schema, crew -> crew.updated_at, "emp_code",
+                (sort, handler) -> client.getCrews(handler, options, fields, null, sort, configuration.getDefaultQueryPageSize(), 0));
     }
 }
@@ -17,12 +17,13 @@ package jp.openstandia.connector.smarthr;
 
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
-import org.identityconnectors.framework.common.exceptions.UnknownUidException;
 import org.identityconnectors.framework.common.objects.*;
 
+import java.util.HashSet;
 import java.util.Set;
 
 import static jp.openstandia.connector.smarthr.SchemaDefinition.SchemaOption.*;
+import static jp.openstandia.connector.smarthr.SmartHRUtils.resolveSort;
 
 public class SmartHRDepartmentHandler implements SmartHRObjectHandler {
 
@@ -86,7 +87,7 @@ public class SmartHRDepartmentHandler implements SmartHRObjectHandler {
                 SmartHRClient.Department.class,
                 (source, dest) -> dest.parent_id = source,
                 (source) -> source.parent != null ? source.parent.id : null,
-                null
+                "parent"
         );
 
         // Metadata (readonly)
@@ -106,7 +107,7 @@ public class SmartHRDepartmentHandler implements SmartHRObjectHandler {
                 null,
                 (source) -> source.created_at,
                 null,
-                NOT_CREATABLE, NOT_UPDATABLE
+                NOT_CREATABLE, NOT_UPDATABLE, SORTABLE
         );
         sb.add("updated_at",
                 SchemaDefinition.Types.DATETIME_STRING,
@@ -115,7 +116,7 @@ public class SmartHRDepartmentHandler implements SmartHRObjectHandler {
                 null,
                 (source) -> source.updated_at,
                 null,
-                NOT_CREATABLE, NOT_UPDATABLE
+                NOT_CREATABLE, NOT_UPDATABLE, SORTABLE
         );
 
         LOGGER.ok("The constructed department schema");
@@ -142,17 +143,12 @@ public class SmartHRDepartmentHandler implements SmartHRObjectHandler {
 
     @Override
     public Set<AttributeDelta> updateDelta(Uid uid, Set<AttributeDelta> modifications, OperationOptions options) {
-        // To apply diff for multiple values, we need to fetch the current object
-        SmartHRClient.Department current = client.getDepartment(uid, options, null);
-
-        if (current == null) {
-            throw new UnknownUidException(String.format("Not found crew. id: %s", uid.getUidValue()));
-        }
-
+        // No multi-valued attributes, so we don't need to fetch the current object
         SmartHRClient.Department dest = new SmartHRClient.Department();
 
         schema.applyDelta(modifications, dest);
 
+        // PATCH throws UnknownUidException if not found
         client.updateDepartment(uid, dest);
 
         return null;
@@ -192,8 +188,38 @@ public class SmartHRDepartmentHandler implements SmartHRObjectHandler {
     @Override
     public int getAll(ResultsHandler resultsHandler, OperationOptions options,
                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-                      boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
-        return client.getDepartments((dept) -> resultsHandler.handle(toConnectorObject(schema, dept, returnAttributesSet, allowPartialAttributeValues)),
-                options, fetchFieldsSet, pageSize, pageOffset);
+                      boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getDepartments((dept) -> resultsHandler.handle(toConnectorObject(schema, dept, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, null, resolveSort(schema, options, "code"), pageSize, pageOffset, scan);
+    }
+
+    @Override
+    public boolean isSyncSupported() {
+        return true;
+    }
+
+    @Override
+    public SyncToken getLatestSyncToken(OperationOptions options) {
+        return newSyncSupport(options, null).getLatestSyncToken();
+    }
+
+    @Override
+    public void sync(SyncToken token, SyncResultsHandler resultsHandler, OperationOptions options,
+                     Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                     boolean allowPartialAttributeValues) {
+        newSyncSupport(options, fetchFieldsSet).sync(token, resultsHandler, returnAttributesSet, allowPartialAttributeValues);
+    }
+
+    private SmartHRSyncSupport<SmartHRClient.Department> newSyncSupport(OperationOptions options, Set<String> fetchFieldsSet) {
+        // Need updated_at for the sync token
+        Set<String> fields = new HashSet<>();
+        if (fetchFieldsSet != null) {
+            fields.addAll(fetchFieldsSet);
+        }
+        fields.add(SmartHRSyncSupport.UPDATED_AT);
+
+        return new SmartHRSyncSupport<>(schema, dept -> dept.updated_at, "code",
+                (sort, handler) -> client.getDepartments(handler, options, fields, null, sort, configuration.getDefaultQueryPageSize(), 0));
     }
 }
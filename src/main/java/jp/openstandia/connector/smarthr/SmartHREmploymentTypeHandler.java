@@ -16,7 +16,6 @@
 package jp.openstandia.connector.smarthr;
 
 import org.identityconnectors.common.logging.Log;
-import org.identityconnectors.framework.common.exceptions.UnknownUidException;
 import org.identityconnectors.framework.common.objects.*;
 
 import java.util.Set;
@@ -111,17 +110,12 @@ public class SmartHREmploymentTypeHandler implements SmartHRObjectHandler {
 
     @Override
     public Set<AttributeDelta> updateDelta(Uid uid, Set<AttributeDelta> modifications, OperationOptions options) {
-        // To apply diff for multiple values, we need to fetch the current object
-        SmartHRClient.EmploymentType current = client.getEmploymentType(uid, options, null);
-
-        if (current == null) {
-            throw new UnknownUidException(String.format("Not found employment_type. id: %s", uid.getUidValue()));
-        }
-
+        // No multi-valued attributes, so we don't need to fetch the current object
         SmartHRClient.EmploymentType dest = new SmartHRClient.EmploymentType();
 
         schema.applyDelta(modifications, dest);
 
+        // PATCH throws UnknownUidException if not found
         client.updateEmploymentType(uid, dest);
 
         return null;
@@ -161,8 +155,9 @@ public class SmartHREmploymentTypeHandler implements SmartHRObjectHandler {
     @Override
     public int getAll(ResultsHandler resultsHandler, OperationOptions options,
                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-                      boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
-        return client.getEmploymentTypes((empType) -> resultsHandler.handle(toConnectorObject(schema, empType, returnAttributesSet, allowPartialAttributeValues)),
-                options, fetchFieldsSet, pageSize, pageOffset);
+                      boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getEmploymentTypes((empType) -> resultsHandler.handle(toConnectorObject(schema, empType, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, pageSize, pageOffset, scan);
     }
 }
@@ -16,36 +16,165 @@
 package jp.openstandia.connector.smarthr;
 
 import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.AttributeUtil;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
 import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.Uid;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 public class SmartHRFilter {
     final String attributeName;
     final FilterType filterType;
     final Attribute attributeValue;
+    // Field name for resource fetching
+    final String fetchField;
+    // True if SmartHR list API can evaluate it by the query parameter
+    final boolean pushDown;
+    // True if the attribute is STRING_CASE_IGNORE subtype
+    final boolean caseIgnore;
+    // Operands of AND/OR
+    final List<SmartHRFilter> children;
 
     public SmartHRFilter(String attributeName, FilterType filterType, Attribute attributeValue) {
+        this(attributeName, filterType, attributeValue, null, false);
+    }
+
+    public SmartHRFilter(String attributeName, FilterType filterType) {
+        this(attributeName, filterType, null, null, false);
+    }
+
+    public SmartHRFilter(String attributeName, FilterType filterType, Attribute attributeValue,
+                         String fetchField, boolean pushDown) {
+        this(attributeName, filterType, attributeValue, fetchField, pushDown, false);
+    }
+
+    public SmartHRFilter(String attributeName, FilterType filterType, Attribute attributeValue,
+                         String fetchField, boolean pushDown, boolean caseIgnore) {
         this.attributeName = attributeName;
         this.filterType = filterType;
         this.attributeValue = attributeValue;
+        this.fetchField = fetchField;
+        this.pushDown = pushDown;
+        this.caseIgnore = caseIgnore;
+        this.children = Collections.emptyList();
     }
 
-    public SmartHRFilter(String attributeName, FilterType filterType) {
-        this.attributeName = attributeName;
+    /**
+     * Create AND/OR filter. Nested filters of the same type are flattened.
+     */
+    public SmartHRFilter(FilterType filterType, SmartHRFilter left, SmartHRFilter right) {
+        this.attributeName = null;
         this.filterType = filterType;
         this.attributeValue = null;
+        this.fetchField = null;
+        this.pushDown = false;
+        this.caseIgnore = false;
+
+        List<SmartHRFilter> list = new ArrayList<>();
+        for (SmartHRFilter f : new SmartHRFilter[]{left, right}) {
+            if (f.filterType == filterType) {
+                list.addAll(f.children);
+            } else {
+                list.add(f);
+            }
+        }
+        this.children = Collections.unmodifiableList(list);
     }
 
     public boolean isByName() {
-        return attributeName.equals(Name.NAME) && filterType == FilterType.EXACT_MATCH;
+        return filterType == FilterType.EXACT_MATCH && attributeName.equals(Name.NAME);
     }
 
     public boolean isByUid() {
-        return attributeName.equals(Uid.NAME) && filterType == FilterType.EXACT_MATCH;
+        return filterType == FilterType.EXACT_MATCH && attributeName.equals(Uid.NAME);
+    }
+
+    public boolean isByAttribute() {
+        return filterType == FilterType.EXACT_MATCH && !isByUid() && !isByName();
+    }
+
+    public boolean isComposite() {
+        return filterType == FilterType.AND || filterType == FilterType.OR;
+    }
+
+    /**
+     * Attribute names used in this filter except Uid and Name.
+     */
+    public Set<String> getAttributeNames() {
+        Set<String> names = new HashSet<>();
+        collect(names, false);
+        return names;
+    }
+
+    /**
+     * Fetch fields needed to evaluate this filter in the connector.
+     */
+    public Set<String> getFetchFields() {
+        Set<String> fields = new HashSet<>();
+        collect(fields, true);
+        return fields;
+    }
+
+    private void collect(Set<String> set, boolean fetchFields) {
+        if (isComposite()) {
+            children.forEach(c -> c.collect(set, fetchFields));
+        } else if (isByAttribute()) {
+            set.add(fetchFields ? fetchField : attributeName);
+        }
+    }
+
+    /**
+     * Query parameters for SmartHR list API.
+     *
+     * @return empty if SmartHR can't evaluate this filter
+     */
+    public Map<String, String> toQueryParams() {
+        if (!pushDown) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(fetchField, AttributeUtil.getAsStringValue(attributeValue));
+    }
+
+    /**
+     * Evaluate this filter in the connector.
+     *
+     * @param connectorObject
+     * @return
+     */
+    public boolean matches(ConnectorObject connectorObject) {
+        if (filterType == FilterType.AND) {
+            return children.stream().allMatch(c -> c.matches(connectorObject));
+        }
+        if (filterType == FilterType.OR) {
+            return children.stream().anyMatch(c -> c.matches(connectorObject));
+        }
+        Attribute attr = connectorObject.getAttributeByName(attributeName);
+        return normalize(attr != null ? attr.getValue() : null)
+                .equals(normalize(attributeValue.getValue()));
+    }
+
+    private Set<Object> normalize(List<Object> values) {
+        Set<Object> normalized = SchemaDefinition.normalize(values);
+        if (!caseIgnore) {
+            return normalized;
+        }
+        return normalized.stream()
+                .map(v -> v instanceof String ? ((String) v).toLowerCase(Locale.ROOT) : v)
+                .collect(Collectors.toSet());
     }
 
     public enum FilterType {
-        EXACT_MATCH;
+        EXACT_MATCH,
+        AND,
+        OR;
     }
 
     @Override
@@ -54,6 +183,9 @@ public class SmartHRFilter {
                 "attributeName='" + attributeName + '\'' +
                 ", filterType=" + filterType +
                 ", attributeValue='" + attributeValue + '\'' +
+                ", pushDown=" + pushDown +
+                ", caseIgnore=" + caseIgnore +
+                ", children=" + children +
                 '}';
     }
 }
@@ -26,10 +26,22 @@ public class SmartHRFilterTranslator extends AbstractFilterTranslator<SmartHRFil
 
     private final OperationOptions options;
     private final ObjectClass objectClass;
+    private final SchemaDefinition schema;
 
-    public SmartHRFilterTranslator(ObjectClass objectClass, OperationOptions options) {
+    public SmartHRFilterTranslator(ObjectClass objectClass, OperationOptions options, SchemaDefinition schema) {
         this.objectClass = objectClass;
         this.options = options;
+        this.schema = schema;
+    }
+
+    @Override
+    protected SmartHRFilter createAndExpression(SmartHRFilter leftExpression, SmartHRFilter rightExpression) {
+        return new SmartHRFilter(SmartHRFilter.FilterType.AND, leftExpression, rightExpression);
+    }
+
+    @Override
+    protected SmartHRFilter createOrExpression(SmartHRFilter leftExpression, SmartHRFilter rightExpression) {
+        return new SmartHRFilter(SmartHRFilter.FilterType.OR, leftExpression, rightExpression);
     }
 
     @Override
@@ -54,7 +66,18 @@ public class SmartHRFilterTranslator extends AbstractFilterTranslator<SmartHRFil
             return nameFilter;
         }
 
-        // Not supported searching by other attributes
-        return null;
+        String fetchField = schema.getFetchField(attr.getName());
+        if (fetchField == null) {
+            // Unknown attribute
+            return null;
+        }
+
+        // Other attributes are evaluated by SmartHR if possible, otherwise by the connector
+        boolean pushDown = schema.isFilterable(attr.getName())
+                && attr.getValue() != null && attr.getValue().size() == 1;
+
+        return new SmartHRFilter(attr.getName(),
+                SmartHRFilter.FilterType.EXACT_MATCH,
+                attr, fetchField, pushDown, schema.isCaseIgnore(attr.getName()));
     }
 }
@@ -0,0 +1,92 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.Attribute;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+
+import java.util.Set;
+
+/**
+ * Evaluate the filter conditions which SmartHR can't evaluate in the connector.
+ * If the search is paged, the paging is also done here because SmartHR returns unfiltered pages.
+ */
+public class SmartHRFilteredResultsHandler implements ResultsHandler {
+
+    private final SmartHRFilter filter;
+    private final ResultsHandler delegate;
+    private final Set<String> returnAttributesSet;
+    private final Set<String> filterAttributes;
+    private final int pageSize;
+    private final int pageOffset;
+
+    private int matched;
+    private int returned;
+
+    /**
+     * @param filter              the filter to evaluate
+     * @param delegate            the handler for the matched objects
+     * @param returnAttributesSet attributes to return, the attributes only for the filter are removed
+     * @param pageSize            page size of the search
+     * @param pageOffset          0 if the paging is done by SmartHR
+     */
+    public SmartHRFilteredResultsHandler(SmartHRFilter filter, ResultsHandler delegate, Set<String> returnAttributesSet,
+                                         int pageSize, int pageOffset) {
+        this.filter = filter;
+        this.delegate = delegate;
+        this.returnAttributesSet = returnAttributesSet;
+        this.filterAttributes = filter.getAttributeNames();
+        this.pageSize = pageSize;
+        this.pageOffset = pageOffset;
+    }
+
+    @Override
+    public boolean handle(ConnectorObject connectorObject) {
+        if (!filter.matches(connectorObject)) {
+            return true;
+        }
+        matched++;
+
+        // ConnId offset starts from 1
+        if (pageOffset > 0 && (matched < pageOffset || returned >= pageSize)) {
+            // Continue to count the total
+            return true;
+        }
+
+        returned++;
+        return delegate.handle(project(connectorObject));
+    }
+
+    public int getMatchedCount() {
+        return matched;
+    }
+
+    private ConnectorObject project(ConnectorObject connectorObject) {
+        if (returnAttributesSet.containsAll(filterAttributes)) {
+            return connectorObject;
+        }
+        ConnectorObjectBuilder builder = new ConnectorObjectBuilder()
+                .setObjectClass(connectorObject.getObjectClass());
+        for (Attribute attr : connectorObject.getAttributes()) {
+            if (returnAttributesSet.contains(attr.getName()) || !filterAttributes.contains(attr.getName())) {
+                builder.addAttribute(attr);
+            }
+        }
+        return builder.build();
+    }
+}
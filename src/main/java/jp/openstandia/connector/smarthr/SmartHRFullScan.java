@@ -0,0 +1,63 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+/**
+ * Settings of the full scan requested by IDM's search without filter.
+ * It's passed explicitly to the list API call of the scan, so the lookups and the reference cache loads
+ * in the same operation don't use them.
+ */
+public class SmartHRFullScan {
+
+    private final SmartHRCheckpoint checkpoint;
+    private final int partitionIndex;
+    private final int partitionCount;
+    private final int fetchQueueSize;
+
+    /**
+     * @param checkpoint     null or the checkpoint to record the completed pages
+     * @param partitionIndex 0-based index of the partition to fetch
+     * @param partitionCount number of the partitions. 1 means the scan isn't partitioned
+     * @param fetchQueueSize number of the fetched pages which can wait for the decoding in the fetch stage
+     *                       of {@link SmartHRSearchPipeline}. 0 means the pages are fetched in the current thread
+     */
+    public SmartHRFullScan(SmartHRCheckpoint checkpoint, int partitionIndex, int partitionCount, int fetchQueueSize) {
+        this.checkpoint = checkpoint;
+        this.partitionIndex = partitionIndex;
+        this.partitionCount = partitionCount;
+        this.fetchQueueSize = fetchQueueSize;
+    }
+
+    public SmartHRCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public boolean isPartitioned() {
+        return partitionCount > 1;
+    }
+
+    public int getPartitionIndex() {
+        return partitionIndex;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public int getFetchQueueSize() {
+        return fetchQueueSize;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorIOException;
+import org.identityconnectors.framework.common.objects.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store of per-Uid content hashes of the returned objects to suppress unchanged objects in full scans.
+ * The hashes are kept in memory, or in a file under the configured directory to survive restarts.
+ * The hashes are replaced only when a full scan has completed, so an interrupted scan doesn't lose any changes.
+ * In the "skip" mode, the unchanged objects aren't returned. In the "flag" mode, all objects are returned
+ * with the {@link #UNCHANGED_ATTR} attribute, so reconciliation doesn't treat the unchanged objects as deleted.
+ */
+public class SmartHRHashStore {
+
+    private static final Log LOGGER = Log.getLog(SmartHRHashStore.class);
+
+    private static final Map<String, SmartHRHashStore> STORES = new ConcurrentHashMap<>();
+
+    public static final String MODE_SKIP = "skip";
+    public static final String MODE_FLAG = "flag";
+    public static final String UNCHANGED_ATTR = "unchanged";
+
+    private final Path file;
+    private volatile Map<String, Long> hashes;
+
+    public static SmartHRHashStore getInstance(SmartHRConfiguration configuration, String instanceName, ObjectClass objectClass) {
+        String owner = instanceName != null ? instanceName : configuration.getEndpointURL();
+        String key = owner + "#" + objectClass.getObjectClassValue();
+
+        return STORES.compute(key, (k, current) -> {
+            Path file = null;
+            if (StringUtil.isNotEmpty(configuration.getHashStoreDirectory())) {
+                String fileName = (owner + "_" + objectClass.getObjectClassValue()).replaceAll("[^a-zA-Z0-9._-]", "_") + ".hash";
+                file = Paths.get(configuration.getHashStoreDirectory(), fileName);
+            }
+            if (current != null && Objects.equals(current.file, file)) {
+                return current;
+            }
+            return new SmartHRHashStore(file);
+        });
+    }
+
+    SmartHRHashStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Start a full scan. The returned handler passes only the new or changed objects to the delegate,
+     * or all objects with the {@link #UNCHANGED_ATTR} attribute if flag is true.
+     *
+     * @param delegate
+     * @param flag
+     * @return
+     */
+    public Scan startScan(ResultsHandler delegate, boolean flag) {
+        return new Scan(getHashes(), delegate, flag);
+    }
+
+    private Map<String, Long> getHashes() {
+        Map<String, Long> current = hashes;
+        if (current == null) {
+            synchronized (this) {
+                if (hashes == null) {
+                    hashes = load();
+                }
+                current = hashes;
+            }
+        }
+        return current;
+    }
+
+    private Map<String, Long> load() {
+        Map<String, Long> loaded = new HashMap<>();
+        if (file == null || !Files.exists(file)) {
+            return loaded;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int i = line.lastIndexOf('\t');
+                if (i > 0) {
+                    loaded.put(line.substring(0, i), Long.parseUnsignedLong(line.substring(i + 1), 16));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Broken file, all objects will be returned
+            LOGGER.warn(e, "Failed to load the hash store: {0}", file);
+            return new HashMap<>();
+        }
+        LOGGER.ok("Loaded {0} hashes from {1}", loaded.size(), file);
+        return loaded;
+    }
+
+    private synchronized void commit(Map<String, Long> scanned) {
+        if (file != null) {
+            try {
+                Files.createDirectories(file.getParent());
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Long> entry : scanned.entrySet()) {
+                        writer.write(entry.getKey());
+                        writer.write('\t');
+                        writer.write(Long.toHexString(entry.getValue()));
+                        writer.newLine();
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            } catch (IOException e) {
+                throw new ConnectorIOException("Failed to save the hash store: " + file, e);
+            }
+        }
+        hashes = scanned;
+    }
+
+    public class Scan implements ResultsHandler {
+        private final Map<String, Long> previous;
+        private final Map<String, Long> scanned = new HashMap<>();
+        private final ResultsHandler delegate;
+        private final boolean flag;
+        private boolean stopped;
+        private boolean partial;
+        private int unchanged;
+
+        Scan(Map<String, Long> previous, ResultsHandler delegate, boolean flag) {
+            this.previous = previous;
+            this.delegate = delegate;
+            this.flag = flag;
+        }
+
+        @Override
+        public boolean handle(ConnectorObject connectorObject) {
+            String uid = connectorObject.getUid().getUidValue();
+            long hash = hash(connectorObject);
+            scanned.put(uid, hash);
+
+            Long previousHash = previous.get(uid);
+            boolean isUnchanged = previousHash != null && previousHash == hash;
+            if (isUnchanged) {
+                unchanged++;
+            }
+
+            if (flag) {
+                connectorObject = new ConnectorObjectBuilder()
+                        .setObjectClass(connectorObject.getObjectClass())
+                        .addAttributes(connectorObject.getAttributes())
+                        .addAttribute(UNCHANGED_ATTR, isUnchanged)
+                        .build();
+
+            } else if (isUnchanged) {
+                return true;
+            }
+
+            if (!delegate.handle(connectorObject)) {
+                stopped = true;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Don't save the hashes on complete because the scan didn't see all objects.
+         */
+        public void markPartial() {
+            partial = true;
+        }
+
+        /**
+         * Save the hashes if all objects have been scanned.
+         */
+        public void complete() {
+            LOGGER.info("{0} {1} unchanged objects", flag ? "Flagged" : "Suppressed", unchanged);
+            if (stopped || partial) {
+                return;
+            }
+            commit(scanned);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the attributes sorted by name.
+     *
+     * @param connectorObject
+     * @return
+     */
+    static long hash(ConnectorObject connectorObject) {
+        List<Attribute> attrs = new ArrayList<>(connectorObject.getAttributes());
+        attrs.sort(Comparator.comparing(Attribute::getName));
+
+        long hash = 0xcbf29ce484222325L;
+        for (Attribute attr : attrs) {
+            hash = fnv(hash, attr.getName());
+            List<Object> values = attr.getValue();
+            if (values != null) {
+                for (Object value : values) {
+                    // Separate the values
+                    hash = fnv(hash, "\u0000");
+                    hash = fnv(hash, String.valueOf(value));
+                }
+            }
+            hash = fnv(hash, "\u0001");
+        }
+        return hash;
+    }
+
+    private static long fnv(long hash, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
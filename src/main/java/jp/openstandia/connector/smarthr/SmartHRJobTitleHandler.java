@@ -16,7 +16,6 @@
 package jp.openstandia.connector.smarthr;
 
 import org.identityconnectors.common.logging.Log;
-import org.identityconnectors.framework.common.exceptions.UnknownUidException;
 import org.identityconnectors.framework.common.objects.*;
 
 import java.util.Set;
@@ -120,17 +119,12 @@ public class SmartHRJobTitleHandler implements SmartHRObjectHandler {
 
     @Override
     public Set<AttributeDelta> updateDelta(Uid uid, Set<AttributeDelta> modifications, OperationOptions options) {
-        // To apply diff for multiple values, we need to fetch the current object
-        SmartHRClient.JobTitle current = client.getJobTitle(uid, options, null);
-
-        if (current == null) {
-            throw new UnknownUidException(String.format("Not found job_title. id: %s", uid.getUidValue()));
-        }
-
+        // No multi-valued attributes, so we don't need to fetch the current object
         SmartHRClient.JobTitle dest = new SmartHRClient.JobTitle();
 
         schema.applyDelta(modifications, dest);
 
+        // PATCH throws UnknownUidException if not found
         client.updateJobTitle(uid, dest);
 
         return null;
@@ -170,8 +164,9 @@ public class SmartHRJobTitleHandler implements SmartHRObjectHandler {
     @Override
     public int getAll(ResultsHandler resultsHandler, OperationOptions options,
                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-                      boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
-        return client.getJobTitles((jobTitle) -> resultsHandler.handle(toConnectorObject(schema, jobTitle, returnAttributesSet, allowPartialAttributeValues)),
-                options, fetchFieldsSet, pageSize, pageOffset);
+                      boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        return client.getJobTitles((jobTitle) -> resultsHandler.handle(toConnectorObject(schema, jobTitle, plan, allowPartialAttributeValues)),
+                options, fetchFieldsSet, pageSize, pageOffset, scan);
     }
 }
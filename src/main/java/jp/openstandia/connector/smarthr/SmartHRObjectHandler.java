@@ -15,8 +15,11 @@
  */
 package jp.openstandia.connector.smarthr;
 
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
 import org.identityconnectors.framework.common.objects.*;
 
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public interface SmartHRObjectHandler {
@@ -35,9 +38,81 @@ public interface SmartHRObjectHandler {
                   Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
                   boolean allowPartialAttributeValues, int pageSize, int pageOffset);
 
+    default int getAll(ResultsHandler resultsHandler, OperationOptions options,
+                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                       boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
+        return getAll(resultsHandler, options, returnAttributesSet, fetchFieldsSet,
+                allowPartialAttributeValues, pageSize, pageOffset, null);
+    }
+
+    /**
+     * @param scan null, or the settings of the full scan requested by IDM
+     */
     int getAll(ResultsHandler resultsHandler, OperationOptions options,
                Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
-               boolean allowPartialAttributeValues, int pageSize, int pageOffset);
+               boolean allowPartialAttributeValues, int pageSize, int pageOffset, SmartHRFullScan scan);
+
+    /**
+     * Count the objects by x-total-count header of a single "per_page=1" request.
+     *
+     * @param filter null or the filter which SmartHR can evaluate
+     */
+    default int count(SmartHRFilter filter, OperationOptions options) {
+        SchemaDefinition schema = getSchema();
+        Set<String> attrs = new HashSet<>();
+        attrs.add(Uid.NAME);
+        attrs.add(Name.NAME);
+        Set<String> fields = new HashSet<>();
+        fields.add(schema.getFetchField(Uid.NAME));
+        fields.add(schema.getFetchField(Name.NAME));
+
+        if (filter != null) {
+            return getByFilter(filter, object -> false, options, attrs, fields, false, 1, 1);
+        }
+        return getAll(object -> false, options, attrs, fields, false, 1, 1);
+    }
+
+    /**
+     * Search by the filter of non-Uid/Name attributes.
+     * If SmartHR can evaluate the filter, it's pushed down by {@link #getAllByQuery}.
+     * Otherwise, it scans all objects and evaluates the filter in the connector.
+     */
+    default int getByFilter(SmartHRFilter filter, ResultsHandler resultsHandler, OperationOptions options,
+                            Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                            boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
+        // Need the filtered attribute for the evaluation
+        Set<String> attrs = new HashSet<>(returnAttributesSet);
+        attrs.addAll(filter.getAttributeNames());
+        Set<String> fields = new HashSet<>(fetchFieldsSet);
+        fields.addAll(filter.getFetchFields());
+
+        if (filter.pushDown) {
+            // Evaluated by SmartHR, but check the results again in case of loose matching
+            SmartHRFilteredResultsHandler filtered = new SmartHRFilteredResultsHandler(filter, resultsHandler,
+                    returnAttributesSet, pageSize, 0);
+
+            return getAllByQuery(filtered, options, attrs, fields, allowPartialAttributeValues,
+                    filter.toQueryParams(), pageSize, pageOffset);
+        }
+
+        SmartHRFilteredResultsHandler filtered = new SmartHRFilteredResultsHandler(filter, resultsHandler,
+                returnAttributesSet, pageSize, pageOffset);
+
+        getAll(filtered, options, attrs, fields, allowPartialAttributeValues, pageSize, 0);
+
+        return filtered.getMatchedCount();
+    }
+
+    /**
+     * Search by the query parameters which SmartHR evaluates.
+     * The handler of the object class which has {@link SchemaDefinition.SchemaOption#FILTERABLE} attributes must implement it.
+     */
+    default int getAllByQuery(ResultsHandler resultsHandler, OperationOptions options,
+                              Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                              boolean allowPartialAttributeValues, Map<String, String> queryParams,
+                              int pageSize, int pageOffset) {
+        throw new InvalidAttributeValueException("Unsupported filter for " + getSchema().getType() + ": " + queryParams);
+    }
 
     default <T> ConnectorObject toConnectorObject(SchemaDefinition schema, T crew,
                                                   Set<String> returnAttributesSet, boolean allowPartialAttributeValues) {
@@ -45,6 +120,29 @@ public interface SmartHRObjectHandler {
         return builder.build();
     }
 
+    default <T> ConnectorObject toConnectorObject(SchemaDefinition schema, T crew,
+                                                  SchemaDefinition.ProjectionPlan plan, boolean allowPartialAttributeValues) {
+        ConnectorObjectBuilder builder = schema.toConnectorObjectBuilder(crew, plan, allowPartialAttributeValues);
+        return builder.build();
+    }
+
+    /**
+     * Returns true if the object class supports the live synchronization.
+     */
+    default boolean isSyncSupported() {
+        return false;
+    }
+
+    default SyncToken getLatestSyncToken(OperationOptions options) {
+        throw new InvalidAttributeValueException("Unsupported object class for sync: " + getSchema().getType());
+    }
+
+    default void sync(SyncToken token, SyncResultsHandler resultsHandler, OperationOptions options,
+                      Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                      boolean allowPartialAttributeValues) {
+        throw new InvalidAttributeValueException("Unsupported object class for sync: " + getSchema().getType());
+    }
+
     SchemaDefinition getSchema();
 
 }
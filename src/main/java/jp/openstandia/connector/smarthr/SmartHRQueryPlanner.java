@@ -0,0 +1,189 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.ConnectorIOException;
+import org.identityconnectors.framework.common.objects.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Planner for AND/OR filters.
+ * The filter is split into a driving part which SmartHR can answer remotely (point lookups by Uid/Name or
+ * a pushed-down attribute filter) and the whole filter which is evaluated in the connector as the residual predicate.
+ * If no driving part is found, it falls back to the full scan.
+ */
+public class SmartHRQueryPlanner {
+
+    private static final Log LOG = Log.getLog(SmartHRQueryPlanner.class);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "smarthr-query-planner-" + THREAD_COUNT.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SmartHRObjectHandler schemaHandler;
+
+    public SmartHRQueryPlanner(SmartHRObjectHandler schemaHandler) {
+        this.schemaHandler = schemaHandler;
+    }
+
+    /**
+     * Execute the search by the composite filter.
+     *
+     * @return the count of the matched objects
+     */
+    public int execute(SmartHRFilter filter, ResultsHandler resultsHandler, OperationOptions options,
+                       Set<String> returnAttributesSet, Set<String> fetchFieldsSet,
+                       boolean allowPartialAttributeValues, int pageSize, int pageOffset) {
+        // Need the filtered attributes for the residual evaluation
+        Set<String> attrs = new HashSet<>(returnAttributesSet);
+        attrs.addAll(filter.getAttributeNames());
+        Set<String> fields = new HashSet<>(fetchFieldsSet);
+        fields.addAll(filter.getFetchFields());
+
+        SmartHRFilteredResultsHandler filtered = new SmartHRFilteredResultsHandler(filter, resultsHandler,
+                returnAttributesSet, pageSize, pageOffset);
+
+        List<SmartHRFilter> lookups = findPointLookups(filter);
+        if (lookups != null) {
+            LOG.ok("Execute {0} point lookups for {1}", lookups.size(), filter);
+            for (ConnectorObject object : lookup(lookups, options, attrs, fields, allowPartialAttributeValues)) {
+                if (!filtered.handle(object)) {
+                    break;
+                }
+            }
+            return filtered.getMatchedCount();
+        }
+
+        SmartHRFilter pushDown = findPushDown(filter);
+        if (pushDown != null) {
+            LOG.ok("Execute the pushed-down filter {0} for {1}", pushDown, filter);
+            schemaHandler.getByFilter(pushDown, filtered, options, attrs, fields,
+                    allowPartialAttributeValues, pageSize, 0);
+            return filtered.getMatchedCount();
+        }
+
+        LOG.ok("Execute the full scan for {0}", filter);
+        schemaHandler.getAll(filtered, options, attrs, fields, allowPartialAttributeValues, pageSize, 0);
+        return filtered.getMatchedCount();
+    }
+
+    /**
+     * Find Uid/Name lookups whose union covers all the results of the filter.
+     *
+     * @return null if the filter can't be answered by point lookups
+     */
+    static List<SmartHRFilter> findPointLookups(SmartHRFilter filter) {
+        if (filter.isByUid() || filter.isByName()) {
+            return Collections.singletonList(filter);
+        }
+        if (filter.filterType == SmartHRFilter.FilterType.OR) {
+            List<SmartHRFilter> lookups = new ArrayList<>();
+            for (SmartHRFilter child : filter.children) {
+                List<SmartHRFilter> childLookups = findPointLookups(child);
+                if (childLookups == null) {
+                    // One of the branches needs the scan
+                    return null;
+                }
+                lookups.addAll(childLookups);
+            }
+            return lookups;
+        }
+        if (filter.filterType == SmartHRFilter.FilterType.AND) {
+            // The most selective operand drives the search, the others are evaluated as the residual
+            List<SmartHRFilter> best = null;
+            for (SmartHRFilter child : filter.children) {
+                List<SmartHRFilter> childLookups = findPointLookups(child);
+                if (childLookups != null && (best == null || childLookups.size() < best.size())) {
+                    best = childLookups;
+                }
+            }
+            return best;
+        }
+        return null;
+    }
+
+    static SmartHRFilter findPushDown(SmartHRFilter filter) {
+        if (filter.pushDown) {
+            return filter;
+        }
+        if (filter.filterType == SmartHRFilter.FilterType.AND) {
+            for (SmartHRFilter child : filter.children) {
+                SmartHRFilter found = findPushDown(child);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Collection<ConnectorObject> lookup(List<SmartHRFilter> lookups, OperationOptions options,
+                                               Set<String> attrs, Set<String> fields,
+                                               boolean allowPartialAttributeValues) {
+        List<Future<List<ConnectorObject>>> futures = new ArrayList<>(lookups.size());
+        for (SmartHRFilter lookup : lookups) {
+            futures.add(EXECUTOR.submit(() -> {
+                List<ConnectorObject> found = new ArrayList<>(1);
+                if (lookup.isByUid()) {
+                    schemaHandler.getByUid((Uid) lookup.attributeValue, found::add, options,
+                            attrs, fields, allowPartialAttributeValues, 1, 0);
+                } else {
+                    schemaHandler.getByName((Name) lookup.attributeValue, found::add, options,
+                            attrs, fields, allowPartialAttributeValues, 1, 0);
+                }
+                return found;
+            }));
+        }
+
+        // Keep the order of the branches and remove the duplicates
+        Map<String, ConnectorObject> results = new LinkedHashMap<>();
+        try {
+            for (Future<List<ConnectorObject>> future : futures) {
+                for (ConnectorObject object : await(future)) {
+                    results.putIfAbsent(object.getUid().getUidValue(), object);
+                }
+            }
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return results.values();
+    }
+
+    private static List<ConnectorObject> await(Future<List<ConnectorObject>> future) {
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectorIOException("Interrupted while waiting for the lookup", e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectorException) {
+                throw (ConnectorException) e.getCause();
+            }
+            throw new ConnectorIOException("Failed to execute the lookup", e.getCause());
+        }
+    }
+}
@@ -15,11 +15,15 @@
  */
 package jp.openstandia.connector.smarthr;
 
+import org.identityconnectors.framework.common.objects.AttributeInfoBuilder;
 import org.identityconnectors.framework.common.objects.ObjectClass;
+import org.identityconnectors.framework.common.objects.ObjectClassInfo;
+import org.identityconnectors.framework.common.objects.ObjectClassInfoBuilder;
 import org.identityconnectors.framework.common.objects.OperationOptionInfoBuilder;
 import org.identityconnectors.framework.common.objects.Schema;
 import org.identityconnectors.framework.common.objects.SchemaBuilder;
 import org.identityconnectors.framework.spi.operations.SearchOp;
+import org.identityconnectors.framework.spi.operations.SyncOp;
 
 import java.util.HashMap;
 import java.util.List;
@@ -71,14 +75,36 @@ public class SmartHRSchema {
         schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildReturnDefaultAttributes(), SearchOp.class);
         schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildPageSize(), SearchOp.class);
         schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildPagedResultsOffset(), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.buildSortKeys(), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.build(SmartHRCheckpoint.RESUME_OPTION, Boolean.class), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.build(SmartHRUtils.PARTITION_INDEX_OPTION, Integer.class), SearchOp.class);
+        schemaBuilder.defineOperationOption(OperationOptionInfoBuilder.build(SmartHRUtils.PARTITION_COUNT_OPTION, Integer.class), SearchOp.class);
 
         this.schema = schemaBuilder.build();
 
     }
 
     private void buildSchema(SchemaBuilder builder, SchemaDefinition schemaDefinition, Function<SchemaDefinition, SmartHRObjectHandler> callback) {
-        builder.defineObjectClass(schemaDefinition.getObjectClassInfo());
+        ObjectClassInfo objectClassInfo = schemaDefinition.getObjectClassInfo();
+        if (configuration.isSuppressUnchangedObjects()
+                && SmartHRHashStore.MODE_FLAG.equals(configuration.getSuppressUnchangedObjectsMode())) {
+            // Returned only by the full scan searches
+            ObjectClassInfoBuilder objectClassInfoBuilder = new ObjectClassInfoBuilder()
+                    .setType(objectClassInfo.getType())
+                    .addAllAttributeInfo(objectClassInfo.getAttributeInfo());
+            objectClassInfoBuilder.addAttributeInfo(AttributeInfoBuilder.define(SmartHRHashStore.UNCHANGED_ATTR)
+                    .setType(Boolean.class)
+                    .setCreateable(false)
+                    .setUpdateable(false)
+                    .setReturnedByDefault(false)
+                    .build());
+            objectClassInfo = objectClassInfoBuilder.build();
+        }
+        builder.defineObjectClass(objectClassInfo);
         SmartHRObjectHandler handler = callback.apply(schemaDefinition);
+        if (!handler.isSyncSupported()) {
+            builder.removeSupportedObjectClass(SyncOp.class, objectClassInfo);
+        }
         this.schemaHandlerMap.put(schemaDefinition.getType(), handler);
     }
 
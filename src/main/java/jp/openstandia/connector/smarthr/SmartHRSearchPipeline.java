@@ -0,0 +1,150 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.ConnectorException;
+import org.identityconnectors.framework.common.exceptions.ConnectorIOException;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ResultsHandler;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Pipeline for the search operation.
+ * Each stage runs the producer in a worker thread and the consumer in the caller thread,
+ * and they are connected by a bounded queue. The order is kept.
+ * If the consumer returns false, the producer is cancelled and stops producing.
+ * <p>
+ * A pipelined full scan chains two stages, so it runs in three threads:
+ * <ol>
+ * <li>fetch: the worker of the inner stage reads the pages from SmartHR.</li>
+ * <li>decode/map: the worker of the outer stage decodes the pages and converts the objects to {@link ConnectorObject}.</li>
+ * <li>deliver: the caller thread passes the converted objects to IDM's {@link ResultsHandler}.</li>
+ * </ol>
+ */
+public class SmartHRSearchPipeline {
+
+    private static final Log LOG = Log.getLog(SmartHRSearchPipeline.class);
+
+    private static final Object END_OF_RESULTS = new Object();
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "smarthr-search-pipeline-" + THREAD_COUNT.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int queueSize;
+
+    public SmartHRSearchPipeline(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Execute the search in the worker thread and deliver the results in the caller thread.
+     *
+     * @param resultsHandler IDM's handler
+     * @param search         search function which passes the converted objects to the given handler
+     * @return the total count returned by the search function
+     */
+    public int execute(ResultsHandler resultsHandler, Function<ResultsHandler, Integer> search) {
+        return this.<ConnectorObject>run(resultsHandler::handle, sink -> search.apply(sink::test));
+    }
+
+    /**
+     * Execute the producer in the worker thread and the consumer in the caller thread.
+     *
+     * @param consumer consumer of the produced items. It returns false to cancel the producer
+     * @param producer producer function which passes the items to the given sink. The sink returns false if cancelled
+     * @return the value returned by the producer
+     */
+    @SuppressWarnings("unchecked")
+    public <T> int run(Predicate<T> consumer, Function<Predicate<T>, Integer> producer) {
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueSize);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        Future<Integer> future = EXECUTOR.submit(() -> {
+            try {
+                return producer.apply(item -> enqueue(queue, item, cancelled));
+            } finally {
+                enqueue(queue, END_OF_RESULTS, cancelled);
+            }
+        });
+
+        try {
+            while (true) {
+                Object next = queue.take();
+                if (next == END_OF_RESULTS) {
+                    break;
+                }
+                if (!consumer.test((T) next)) {
+                    LOG.ok("Cancelled the search pipeline by the consumer");
+                    cancelled.set(true);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            throw new ConnectorIOException("Interrupted while waiting for the search results", e);
+
+        } catch (RuntimeException e) {
+            cancelled.set(true);
+            throw e;
+        }
+
+        return await(future);
+    }
+
+    private static boolean enqueue(BlockingQueue<Object> queue, Object object, AtomicBoolean cancelled) {
+        try {
+            // Wait for the space in the queue, but give up if the caller stopped consuming
+            while (!cancelled.get()) {
+                if (queue.offer(object, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static int await(Future<Integer> future) {
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectorIOException("Interrupted while waiting for the search pipeline", e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ConnectorException) {
+                throw (ConnectorException) e.getCause();
+            }
+            throw new ConnectorIOException("Failed to execute the search pipeline", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Live synchronization by polling the objects sorted by updated_at.
+ * The sync token is the updated_at of the last delivered object.
+ * <p>
+ * The changed objects are fetched in descending order of updated_at until an object older than the token is found,
+ * then delivered in ascending order with their own token. So the sync can resume from the last delivered object
+ * if it's interrupted. The objects which have the same updated_at as the token are delivered again
+ * not to miss any of them. Deleted objects can't be detected.
+ * <p>
+ * The first sync without token delivers all objects in the stable sort order, e.g. emp_code, because the paging
+ * by updated_at skips an object when another one is updated and moves to the end while paging.
+ * The token of the first sync is the latest updated_at when it started, so the objects changed during the first sync
+ * are delivered again by the next sync. The deltas of the first sync have the epoch token, so the interrupted
+ * first sync is resumed from the beginning. An object can still be skipped if another one is deleted while paging.
+ *
+ * @param <T> the type of the resource object
+ */
+public class SmartHRSyncSupport<T> {
+
+    private static final Log LOGGER = Log.getLog(SmartHRSyncSupport.class);
+
+    static final String UPDATED_AT = "updated_at";
+
+    // The token which delivers all objects
+    static final String EPOCH_TOKEN = Instant.EPOCH.toString();
+
+    private final SchemaDefinition schema;
+    private final Function<T, String> updatedAtGetter;
+    private final String stableSort;
+    // Arguments: sort key and the handler, Return: total count
+    private final BiFunction<String, SmartHRQueryHandler<T>, Integer> lister;
+
+    public SmartHRSyncSupport(SchemaDefinition schema, Function<T, String> updatedAtGetter, String stableSort,
+                              BiFunction<String, SmartHRQueryHandler<T>, Integer> lister) {
+        this.schema = schema;
+        this.updatedAtGetter = updatedAtGetter;
+        this.stableSort = stableSort;
+        this.lister = lister;
+    }
+
+    public SyncToken getLatestSyncToken() {
+        String latest = getLatestUpdatedAt();
+        if (latest == null) {
+            // No objects yet, don't use the clock of the connector host which can be skewed from SmartHR
+            return new SyncToken(EPOCH_TOKEN);
+        }
+        return new SyncToken(latest);
+    }
+
+    private String getLatestUpdatedAt() {
+        AtomicReference<String> latest = new AtomicReference<>();
+        lister.apply("-" + UPDATED_AT, o -> {
+            String updatedAt = updatedAtGetter.apply(o);
+            if (updatedAt == null) {
+                return true;
+            }
+            latest.set(updatedAt);
+            return false;
+        });
+        return latest.get();
+    }
+
+    public void sync(SyncToken token, SyncResultsHandler handler,
+                     Set<String> returnAttributesSet, boolean allowPartialAttributeValues) {
+        SchemaDefinition.ProjectionPlan plan = schema.createProjectionPlan(returnAttributesSet);
+        AtomicReference<String> lastToken = new AtomicReference<>(token != null ? token.getValue().toString() : null);
+
+        boolean completed;
+
+        if (token == null) {
+            // First sync, deliver all objects in the stable order without buffering
+            String watermark = getLatestUpdatedAt();
+            AtomicReference<Boolean> stopped = new AtomicReference<>(false);
+            lister.apply(stableSort, o -> {
+                if (!handler.handle(toSyncDelta(o, EPOCH_TOKEN, plan, allowPartialAttributeValues))) {
+                    stopped.set(true);
+                    return false;
+                }
+                return true;
+            });
+            completed = !stopped.get();
+            lastToken.set(watermark != null ? watermark : EPOCH_TOKEN);
+
+        } else {
+            Instant since = toInstant(token.getValue().toString());
+            List<T> changes = new ArrayList<>();
+
+            lister.apply("-" + UPDATED_AT, o -> {
+                String updatedAt = updatedAtGetter.apply(o);
+                if (updatedAt == null) {
+                    return true;
+                }
+                if (toInstant(updatedAt).isBefore(since)) {
+                    // Found older object, no more changes
+                    return false;
+                }
+                changes.add(o);
+                return true;
+            });
+
+            LOGGER.ok("Found {0} changed {1} objects since {2}", changes.size(), schema.getType(), token.getValue());
+
+            completed = true;
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                T o = changes.get(i);
+                String updatedAt = updatedAtGetter.apply(o);
+                if (!handler.handle(toSyncDelta(o, updatedAt, plan, allowPartialAttributeValues))) {
+                    completed = false;
+                    break;
+                }
+                lastToken.set(updatedAt);
+            }
+        }
+
+        if (completed && lastToken.get() != null && handler instanceof SyncTokenResultsHandler) {
+            ((SyncTokenResultsHandler) handler).handleResult(new SyncToken(lastToken.get()));
+        }
+    }
+
+    private SyncDelta toSyncDelta(T o, String token, SchemaDefinition.ProjectionPlan plan,
+                                  boolean allowPartialAttributeValues) {
+        ConnectorObject object = schema.toConnectorObjectBuilder(o, plan, allowPartialAttributeValues).build();
+        return new SyncDeltaBuilder()
+                .setDeltaType(SyncDeltaType.CREATE_OR_UPDATE)
+                .setObject(object)
+                .setToken(new SyncToken(token))
+                .build();
+    }
+
+    private static Instant toInstant(String token) {
+        if (token.endsWith("Z")) {
+            // The epoch token
+            return Instant.parse(token);
+        }
+        return SmartHRUtils.toZonedDateTimeFromISO(token).toInstant();
+    }
+}
@@ -16,14 +16,23 @@
 package jp.openstandia.connector.smarthr;
 
 import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.SortKey;
+import org.identityconnectors.framework.common.objects.Uid;
 
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides utility methods
@@ -31,11 +40,83 @@ import java.util.Set;
  * @author Hiroyuki Wada
  */
 public class SmartHRUtils {
+    // Operation options to fetch only a partition of the full scan
+    public static final String PARTITION_INDEX_OPTION = "partition_index";
+    public static final String PARTITION_COUNT_OPTION = "partition_count";
+
     private static final Log LOG = Log.getLog(SmartHRUtils.class);
 
+    /**
+     * Report the update which was skipped because it doesn't change anything.
+     *
+     * @param schema
+     * @param uid
+     */
+    public static void recordSkippedUpdate(SchemaDefinition schema, Uid uid) {
+        LOG.info("Skipped no-op update of {0}: {1}", schema.getType(), uid.getUidValue());
+    }
+
+    // Resolve once, it's called for every date value
+    private static final ZoneId DEFAULT_ZONE = ZoneId.systemDefault();
+
+    // The dates (yyyy-MM-dd) in a tenant are from a small set of distinct values, so memoize the parsed results.
+    // The cache is bounded by clearing it when it is full.
+    private static final int MAX_DATE_CACHE_SIZE = 10000;
+    private static final Map<String, ZonedDateTime> DATE_CACHE = new ConcurrentHashMap<>();
+
     public static ZonedDateTime toZoneDateTime(String yyyymmdd) {
-        LocalDate date = LocalDate.parse(yyyymmdd);
-        return date.atStartOfDay(ZoneId.systemDefault());
+        ZonedDateTime cached = DATE_CACHE.get(yyyymmdd);
+        if (cached != null) {
+            return cached;
+        }
+        ZonedDateTime date = parseDate(yyyymmdd).atStartOfDay(DEFAULT_ZONE);
+        if (yyyymmdd.length() == 10) {
+            if (DATE_CACHE.size() >= MAX_DATE_CACHE_SIZE) {
+                DATE_CACHE.clear();
+            }
+            DATE_CACHE.put(yyyymmdd, date);
+        }
+        return date;
+    }
+
+    /**
+     * Parse ISO 8601 datetime with offset, e.g. 2021-04-01T09:00:00.000+09:00.
+     *
+     * @param datetime
+     * @return
+     */
+    public static ZonedDateTime toZonedDateTimeFromISO(String datetime) {
+        // Not memoized because the datetimes are mostly distinct
+        return ZonedDateTime.parse(datetime, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    private static LocalDate parseDate(String yyyymmdd) {
+        // Fast path for yyyy-MM-dd which is the only format SmartHR returns
+        if (yyyymmdd.length() == 10 && yyyymmdd.charAt(4) == '-' && yyyymmdd.charAt(7) == '-') {
+            int year = toDigits(yyyymmdd, 0, 4);
+            int month = toDigits(yyyymmdd, 5, 7);
+            int day = toDigits(yyyymmdd, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    return LocalDate.of(year, month, day);
+                } catch (DateTimeException ignore) {
+                    // Fall through to get the same exception as LocalDate.parse
+                }
+            }
+        }
+        return LocalDate.parse(yyyymmdd);
+    }
+
+    private static int toDigits(String s, int begin, int end) {
+        int value = 0;
+        for (int i = begin; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 
     /**
@@ -86,10 +167,20 @@ public class SmartHRUtils {
      */
     public static Map<String, String> createFullAttributesToGet(SchemaDefinition schema, OperationOptions options) {
         Map<String, String> attributesToGet = new HashMap<>();
-        attributesToGet.putAll(toReturnedByDefaultAttributesSet(schema));
+        if (options.getAttributesToGet() == null || shouldReturnDefaultAttributes(options)) {
+            attributesToGet.putAll(toReturnedByDefaultAttributesSet(schema));
+        } else {
+            // Only the requested attributes, but Uid and Name are always required to build ConnectorObject
+            attributesToGet.put(Uid.NAME, schema.getFetchField(Uid.NAME));
+            attributesToGet.put(Name.NAME, schema.getFetchField(Name.NAME));
+        }
 
         if (options.getAttributesToGet() != null) {
             for (String a : options.getAttributesToGet()) {
+                if (a.equals(SmartHRHashStore.UNCHANGED_ATTR)) {
+                    // Added by the hash store, not fetched from SmartHR
+                    continue;
+                }
                 String fetchField = schema.getFetchField(a);
                 if (fetchField == null) {
                     LOG.warn("Requested unknown attribute to get. Ignored it: {0}", a);
@@ -119,4 +210,81 @@ public class SmartHRUtils {
         }
         return 0;
     }
+
+    public static boolean isPartitioned(OperationOptions options) {
+        return resolvePartitionCount(options) > 1;
+    }
+
+    public static int resolvePartitionCount(OperationOptions options) {
+        Object count = options.getOptions() != null ? options.getOptions().get(PARTITION_COUNT_OPTION) : null;
+        if (count == null) {
+            return 1;
+        }
+        if (!(count instanceof Integer) || (Integer) count < 1) {
+            throw new InvalidAttributeValueException("Invalid " + PARTITION_COUNT_OPTION + ": " + count);
+        }
+        return (Integer) count;
+    }
+
+    public static int resolvePartitionIndex(OperationOptions options) {
+        Object index = options.getOptions() != null ? options.getOptions().get(PARTITION_INDEX_OPTION) : null;
+        if (index == null) {
+            return 0;
+        }
+        if (!(index instanceof Integer) || (Integer) index < 0 || (Integer) index >= resolvePartitionCount(options)) {
+            throw new InvalidAttributeValueException("Invalid " + PARTITION_INDEX_OPTION + ": " + index);
+        }
+        return (Integer) index;
+    }
+
+    /**
+     * Split the pages of the full scan into contiguous and disjoint ranges.
+     *
+     * @param total          total count of the objects
+     * @param pageSize
+     * @param partitionIndex 0-based index of the partition
+     * @param partitionCount
+     * @return the first and the last page number (1-based, inclusive). The first is greater than the last if it's empty
+     */
+    public static int[] resolvePartitionPages(int total, int pageSize, int partitionIndex, int partitionCount) {
+        long pages = (total + pageSize - 1) / pageSize;
+        int first = (int) (pages * partitionIndex / partitionCount) + 1;
+        int last = (int) (pages * (partitionIndex + 1) / partitionCount);
+        return new int[]{first, last};
+    }
+
+    /**
+     * Count-only search is requested by zero attributes to get with page size 0.
+     *
+     * @param options
+     * @return
+     */
+    public static boolean isCountOnly(OperationOptions options) {
+        return options.getPageSize() != null && options.getPageSize() == 0
+                && options.getAttributesToGet() != null && options.getAttributesToGet().length == 0;
+    }
+
+    /**
+     * Resolve "sort" query parameter of SmartHR from the SORT_KEYS operation option.
+     * Descending order is represented by "-" prefix.
+     *
+     * @param schema
+     * @param options
+     * @param defaultSort used when no sort keys are requested
+     * @return
+     */
+    public static String resolveSort(SchemaDefinition schema, OperationOptions options, String defaultSort) {
+        if (options == null || options.getSortKeys() == null || options.getSortKeys().length == 0) {
+            return defaultSort;
+        }
+        List<String> sort = new ArrayList<>();
+        for (SortKey sortKey : options.getSortKeys()) {
+            if (!schema.isSortable(sortKey.getField())) {
+                throw new InvalidAttributeValueException("Unsupported sort key: " + sortKey.getField());
+            }
+            String field = schema.getFetchField(sortKey.getField());
+            sort.add(sortKey.isAscendingOrder() ? field : "-" + field);
+        }
+        return String.join(",", sort);
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.rest;
+
+import jp.openstandia.connector.smarthr.SmartHRConfiguration;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of {@link OkHttpClient}.
+ * The pooled connector instances for the same tenant share one connection pool and one dispatcher,
+ * so TLS connections are reused across the instances.
+ * Per instance settings (the API access token and the proxy credentials) must be added to the client
+ * derived by {@link OkHttpClient#newBuilder()}.
+ */
+public class SmartHRHttpClientRegistry {
+
+    private static final Log LOG = Log.getLog(SmartHRHttpClientRegistry.class);
+
+    private static final Map<String, OkHttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private SmartHRHttpClientRegistry() {
+    }
+
+    public static OkHttpClient getSharedClient(SmartHRConfiguration configuration) {
+        return CLIENTS.computeIfAbsent(createKey(configuration), key -> {
+            LOG.info("Create shared http client for {0}", configuration.getEndpointURL());
+            return createClient(configuration);
+        });
+    }
+
+    private static String createKey(SmartHRConfiguration configuration) {
+        return String.join("|",
+                configuration.getEndpointURL(),
+                String.valueOf(configuration.getHttpProxyHost()),
+                String.valueOf(configuration.getHttpProxyPort()),
+                // Don't share the tunnels established with other proxy users
+                String.valueOf(configuration.getHttpProxyUser()),
+                String.valueOf(configuration.getConnectionTimeoutInSeconds()),
+                String.valueOf(configuration.getReadTimeoutInSeconds()),
+                String.valueOf(configuration.getWriteTimeoutInSeconds()),
+                String.valueOf(configuration.getMaxIdleConnections()),
+                String.valueOf(configuration.getKeepAliveDurationInSeconds()),
+                String.valueOf(configuration.getMaxRequestsPerHost()));
+    }
+
+    private static OkHttpClient createClient(SmartHRConfiguration configuration) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(configuration.getMaxRequestsPerHost());
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), configuration.getMaxRequestsPerHost()));
+
+        OkHttpClient.Builder okHttpBuilder = new OkHttpClient.Builder();
+        okHttpBuilder.connectTimeout(configuration.getConnectionTimeoutInSeconds(), TimeUnit.SECONDS);
+        okHttpBuilder.readTimeout(configuration.getReadTimeoutInSeconds(), TimeUnit.SECONDS);
+        okHttpBuilder.writeTimeout(configuration.getWriteTimeoutInSeconds(), TimeUnit.SECONDS);
+        okHttpBuilder.connectionPool(new ConnectionPool(configuration.getMaxIdleConnections(),
+                configuration.getKeepAliveDurationInSeconds(), TimeUnit.SECONDS));
+        okHttpBuilder.dispatcher(dispatcher);
+
+        // Setup http proxy aware httpClient
+        if (StringUtil.isNotEmpty(configuration.getHttpProxyHost())) {
+            okHttpBuilder.proxy(new Proxy(Proxy.Type.HTTP,
+                    new InetSocketAddress(configuration.getHttpProxyHost(), configuration.getHttpProxyPort())));
+        }
+
+        return okHttpBuilder.build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.rest;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Controller of "per_page" for full scans. It doubles or halves the page size from the observed
+ * response latency and bytes per object, within SmartHR's maximum page size.
+ * The page size converged for the object class is kept and used by the next full scan.
+ * <p>
+ * SmartHR paginates by page number, so the page size is changed only when the number of the already fetched objects
+ * is a multiple of the new page size. Otherwise the next page would skip or repeat objects.
+ */
+public class SmartHRPageSizeController {
+
+    private static final Log LOG = Log.getLog(SmartHRPageSizeController.class);
+
+    // Maximum "per_page" of SmartHR API
+    public static final int MAX_PAGE_SIZE = 100;
+    static final int MIN_PAGE_SIZE = 10;
+    // Upper bound of the response size of a page
+    static final long MAX_PAGE_BYTES = 1024 * 1024;
+
+    private static final Map<String, SmartHRPageSizeController> CONTROLLERS = new ConcurrentHashMap<>();
+
+    private final long targetLatencyMillis;
+    private volatile int pageSize;
+
+    public static SmartHRPageSizeController getInstance(String endpointURL, ObjectClass objectClass,
+                                                        int initialPageSize, long readTimeoutMillis) {
+        return CONTROLLERS.computeIfAbsent(endpointURL + "#" + objectClass.getObjectClassValue(),
+                key -> new SmartHRPageSizeController(initialPageSize, readTimeoutMillis));
+    }
+
+    SmartHRPageSizeController(int initialPageSize, long readTimeoutMillis) {
+        this.pageSize = Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, initialPageSize));
+        // Keep enough margin for the read timeout
+        this.targetLatencyMillis = Math.max(1, readTimeoutMillis / 4);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Decide the page size for the next page from the result of the current page.
+     *
+     * @param current       page size used for the current page
+     * @param fetched       the number of the already fetched objects including the current page
+     * @param latencyMillis time until the response of the current page arrived
+     * @param bytes         response size of the current page
+     * @param count         the number of the objects in the current page
+     * @return page size for the next page
+     */
+    public int next(int current, int fetched, long latencyMillis, long bytes, int count) {
+        if (count <= 0) {
+            return current;
+        }
+        long bytesPerObject = bytes / count;
+
+        int next = current;
+        if (latencyMillis > targetLatencyMillis || bytesPerObject * current > MAX_PAGE_BYTES) {
+            if (current % 2 == 0 && current / 2 >= MIN_PAGE_SIZE) {
+                next = current / 2;
+            }
+        } else if (latencyMillis * 2 <= targetLatencyMillis && bytesPerObject * current * 2 <= MAX_PAGE_BYTES) {
+            if (current * 2 <= MAX_PAGE_SIZE) {
+                next = current * 2;
+            }
+        }
+
+        // Can't change the page boundary in the middle of a page
+        if (next != current && fetched % next != 0) {
+            next = current;
+        }
+
+        if (next != current) {
+            LOG.ok("Change the page size from {0} to {1}. latency: {2}ms, bytes/object: {3}",
+                    current, next, latencyMillis, bytesPerObject);
+        }
+        this.pageSize = next;
+        return next;
+    }
+}
@@ -15,12 +15,20 @@
  */
 package jp.openstandia.connector.smarthr.rest;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jp.openstandia.connector.smarthr.SmartHRCheckpoint;
 import jp.openstandia.connector.smarthr.SmartHRClient;
 import jp.openstandia.connector.smarthr.SmartHRConfiguration;
+import jp.openstandia.connector.smarthr.SmartHRFullScan;
 import jp.openstandia.connector.smarthr.SmartHRQueryHandler;
+import jp.openstandia.connector.smarthr.SmartHRSearchPipeline;
 import okhttp3.*;
 import org.identityconnectors.common.StringUtil;
 import org.identityconnectors.common.logging.Log;
@@ -30,12 +38,18 @@ import org.identityconnectors.framework.common.objects.ObjectClass;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.Uid;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static jp.openstandia.connector.smarthr.SmartHRBizEstablishmentHandler.BIZ_ESTABLISHMENT_OBJECT_CLASS;
 import static jp.openstandia.connector.smarthr.SmartHRCompanyHandler.COMPANY_OBJECT_CLASS;
@@ -43,6 +57,7 @@ import static jp.openstandia.connector.smarthr.SmartHRCrewHandler.CREW_OBJECT_CL
 import static jp.openstandia.connector.smarthr.SmartHRDepartmentHandler.DEPARTMENT_OBJECT_CLASS;
 import static jp.openstandia.connector.smarthr.SmartHREmploymentTypeHandler.EMPLOYMENT_TYPE_OBJECT_CLASS;
 import static jp.openstandia.connector.smarthr.SmartHRJobTitleHandler.JOB_TITLE_OBJECT_CLASS;
+import static jp.openstandia.connector.smarthr.SmartHRUtils.resolvePartitionPages;
 
 public class SmartHRRESTClient implements SmartHRClient {
 
@@ -53,11 +68,24 @@ public class SmartHRRESTClient implements SmartHRClient {
     private final String instanceName;
     private final SmartHRConfiguration configuration;
     private final OkHttpClient httpClient;
+    private final SmartHRRateLimiter rateLimiter;
+
+    private final SmartHRReferenceCache<EmploymentType> empTypeCache;
+    private final SmartHRReferenceCache<JobTitle> jobTitleCache;
+    private final SmartHRReferenceCache<Company> companyCache;
+    private final SmartHRReferenceCache<BizEstablishment> bizEstablishmentCache;
 
     public SmartHRRESTClient(String instanceName, SmartHRConfiguration configuration, OkHttpClient httpClient) {
         this.instanceName = instanceName;
         this.configuration = configuration;
         this.httpClient = httpClient;
+        this.rateLimiter = SmartHRRateLimiter.getInstance(configuration);
+
+        String url = configuration.getEndpointURL();
+        this.empTypeCache = SmartHRReferenceCache.getInstance(url, EMPLOYMENT_TYPE_OBJECT_CLASS, e -> e.id, e -> e.name);
+        this.jobTitleCache = SmartHRReferenceCache.getInstance(url, JOB_TITLE_OBJECT_CLASS, j -> j.id, j -> j.name);
+        this.companyCache = SmartHRReferenceCache.getInstance(url, COMPANY_OBJECT_CLASS, c -> c.id, c -> c.name);
+        this.bizEstablishmentCache = SmartHRReferenceCache.getInstance(url, BIZ_ESTABLISHMENT_OBJECT_CLASS, b -> b.id, b -> b.name);
     }
 
     @Override
@@ -73,6 +101,9 @@ public class SmartHRRESTClient implements SmartHRClient {
 
             LOG.info("[{0}] SmartHR connector's connection test is OK", instanceName);
 
+            // Reload the reference objects on next lookup
+            SmartHRReferenceCache.invalidateAll(configuration.getEndpointURL());
+
         } catch (IOException e) {
             throw new ConnectionFailedException("Cannot connect to SmartHR REST API", e);
         }
@@ -144,7 +175,7 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public Crew getCrew(Uid uid, OperationOptions options, Set<String> fetchFieldsSet) {
-        try (Response response = get(getCrewEndpointURL(configuration, uid))) {
+        try (Response response = get(getCrewEndpointURL(configuration, uid), toFieldsParams(fetchFieldsSet))) {
             if (response.code() == 404) {
                 // Don't throw
                 return null;
@@ -167,6 +198,7 @@ public class SmartHRRESTClient implements SmartHRClient {
     public Crew getCrew(Name name, OperationOptions options, Set<String> fetchFieldsSet) {
         Map<String, String> params = new HashMap<>();
         params.put("emp_code", name.getNameValue());
+        putFields(params, fetchFieldsSet);
 
         try (Response response = get(getCrewEndpointURL(configuration), params, 1, 1)) {
             if (response.code() != 200) {
@@ -200,13 +232,20 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
-        // TODO Support sort by other attributes
+        return getCrews(handler, options, fetchFieldsSet, null, "emp_code", pageSize, pageOffset);
+    }
+
+    @Override
+    public int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> fetchFieldsSet, Map<String, String> filters, String sort, int pageSize, int pageOffset, SmartHRFullScan scan) {
         Map<String, String> params = new HashMap<>();
-        params.put("sort", "emp_code");
-        params.put("fields", String.join(",", fetchFieldsSet));
+        if (filters != null) {
+            params.putAll(filters);
+        }
+        params.put("sort", sort);
+        putFields(params, fetchFieldsSet);
 
-        return getAll(handler, options, params, pageSize, pageOffset, getCrewEndpointURL(configuration), new TypeReference<List<Crew>>() {
-        }, CREW_OBJECT_CLASS);
+        return getAll(handler, params, pageSize, pageOffset, getCrewEndpointURL(configuration), new TypeReference<List<Crew>>() {
+        }, CREW_OBJECT_CLASS, scan);
     }
 
     // Department
@@ -242,7 +281,7 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public Department getDepartment(Uid uid, OperationOptions options, Set<String> fetchFieldsSet) {
-        try (Response response = get(getDeptEndpointURL(configuration, uid))) {
+        try (Response response = get(getDeptEndpointURL(configuration, uid), toFieldsParams(fetchFieldsSet))) {
             if (response.code() == 404) {
                 // Don't throw
                 return null;
@@ -265,6 +304,7 @@ public class SmartHRRESTClient implements SmartHRClient {
     public Department getDepartment(Name name, OperationOptions options, Set<String> fetchFieldsSet) {
         Map<String, String> params = new HashMap<>();
         params.put("code", name.getNameValue());
+        putFields(params, fetchFieldsSet);
 
         try (Response response = get(getDeptEndpointURL(configuration), params, 1, 1)) {
             if (response.code() != 200) {
@@ -298,12 +338,20 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
-        // TODO Support sort by other attributes
+        return getDepartments(handler, options, fetchFieldsSet, null, "code", pageSize, pageOffset);
+    }
+
+    @Override
+    public int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> fetchFieldsSet, Map<String, String> filters, String sort, int pageSize, int pageOffset, SmartHRFullScan scan) {
         Map<String, String> params = new HashMap<>();
-        params.put("sort", "code");
+        if (filters != null) {
+            params.putAll(filters);
+        }
+        params.put("sort", sort);
+        putFields(params, fetchFieldsSet);
 
-        return getAll(handler, options, params, pageSize, pageOffset, getDeptEndpointURL(configuration), new TypeReference<List<Department>>() {
-        }, DEPARTMENT_OBJECT_CLASS);
+        return getAll(handler, params, pageSize, pageOffset, getDeptEndpointURL(configuration), new TypeReference<List<Department>>() {
+        }, DEPARTMENT_OBJECT_CLASS, scan);
     }
 
     // EmploymentType
@@ -324,6 +372,7 @@ public class SmartHRRESTClient implements SmartHRClient {
             }
 
             EmploymentType created = MAPPER.readValue(response.body().byteStream(), EmploymentType.class);
+            empTypeCache.invalidate();
 
             // Created
             if (created.name != null) {
@@ -339,7 +388,12 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public EmploymentType getEmploymentType(Uid uid, OperationOptions options, Set<String> fetchFieldsSet) {
-        try (Response response = get(getEmpTypeEndpointURL(configuration, uid))) {
+        if (isReferenceCacheEnabled()) {
+            return empTypeCache.getByUid(uid.getUidValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getEmploymentTypes(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
+        try (Response response = get(getEmpTypeEndpointURL(configuration, uid), toFieldsParams(fetchFieldsSet))) {
             if (response.code() == 404) {
                 // Don't throw
                 return null;
@@ -360,6 +414,11 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public EmploymentType getEmploymentType(Name name, OperationOptions options, Set<String> fetchFieldsSet) {
+        if (isReferenceCacheEnabled()) {
+            return empTypeCache.getByName(name.getNameValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getEmploymentTypes(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
         // No API to fetch by name currently.
         // We need to fetch all employment_type and filter them by name.
         final AtomicReference<EmploymentType> result = new AtomicReference<>();
@@ -370,7 +429,7 @@ public class SmartHRRESTClient implements SmartHRClient {
                 return false;
             }
             return true;
-        }, options, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
+        }, null, withField(fetchFieldsSet, "name"), configuration.getDefaultQueryPageSize(), 0);
 
         return result.get();
     }
@@ -378,17 +437,19 @@ public class SmartHRRESTClient implements SmartHRClient {
     @Override
     public void updateEmploymentType(Uid uid, EmploymentType update) {
         callPatch(EMPLOYMENT_TYPE_OBJECT_CLASS, getEmpTypeEndpointURL(configuration, uid), uid, update);
+        empTypeCache.invalidate();
     }
 
     @Override
     public void deleteEmploymentType(Uid uid, OperationOptions options) {
         callDelete(EMPLOYMENT_TYPE_OBJECT_CLASS, getEmpTypeEndpointURL(configuration, uid), uid);
+        empTypeCache.invalidate();
     }
 
     @Override
-    public int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
-        return getAll(handler, options, pageSize, pageOffset, getEmpTypeEndpointURL(configuration), new TypeReference<List<EmploymentType>>() {
-        }, EMPLOYMENT_TYPE_OBJECT_CLASS);
+    public int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        return getAll(handler, toFieldsParams(fetchFieldsSet), pageSize, pageOffset, getEmpTypeEndpointURL(configuration), new TypeReference<List<EmploymentType>>() {
+        }, EMPLOYMENT_TYPE_OBJECT_CLASS, scan);
     }
 
     // JobTitle
@@ -409,6 +470,7 @@ public class SmartHRRESTClient implements SmartHRClient {
             }
 
             JobTitle created = MAPPER.readValue(response.body().byteStream(), JobTitle.class);
+            jobTitleCache.invalidate();
 
             // Created
             if (created.name != null) {
@@ -424,7 +486,12 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public JobTitle getJobTitle(Uid uid, OperationOptions options, Set<String> fetchFieldsSet) {
-        try (Response response = get(getJobTitleEndpointURL(configuration, uid))) {
+        if (isReferenceCacheEnabled()) {
+            return jobTitleCache.getByUid(uid.getUidValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getJobTitles(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
+        try (Response response = get(getJobTitleEndpointURL(configuration, uid), toFieldsParams(fetchFieldsSet))) {
             if (response.code() == 404) {
                 // Don't throw
                 return null;
@@ -445,6 +512,11 @@ public class SmartHRRESTClient implements SmartHRClient {
 
     @Override
     public JobTitle getJobTitle(Name name, OperationOptions options, Set<String> fetchFieldsSet) {
+        if (isReferenceCacheEnabled()) {
+            return jobTitleCache.getByName(name.getNameValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getJobTitles(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
         // No API to fetch by name currently.
         // We need to fetch all job titles and filter them by name.
         final AtomicReference<JobTitle> result = new AtomicReference<>();
@@ -455,7 +527,7 @@ public class SmartHRRESTClient implements SmartHRClient {
                 return false;
             }
             return true;
-        }, options, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
+        }, null, withField(fetchFieldsSet, "name"), configuration.getDefaultQueryPageSize(), 0);
 
         return result.get();
     }
@@ -463,23 +535,30 @@ public class SmartHRRESTClient implements SmartHRClient {
     @Override
     public void updateJobTitle(Uid uid, JobTitle update) {
         callPatch(JOB_TITLE_OBJECT_CLASS, getJobTitleEndpointURL(configuration, uid), uid, update);
+        jobTitleCache.invalidate();
     }
 
     @Override
     public void deleteJobTitle(Uid uid, OperationOptions options) {
         callDelete(JOB_TITLE_OBJECT_CLASS, getJobTitleEndpointURL(configuration, uid), uid);
+        jobTitleCache.invalidate();
     }
 
     @Override
-    public int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
-        return getAll(handler, options, pageSize, pageOffset, getJobTitleEndpointURL(configuration), new TypeReference<List<JobTitle>>() {
-        }, JOB_TITLE_OBJECT_CLASS);
+    public int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        return getAll(handler, toFieldsParams(fetchFieldsSet), pageSize, pageOffset, getJobTitleEndpointURL(configuration), new TypeReference<List<JobTitle>>() {
+        }, JOB_TITLE_OBJECT_CLASS, scan);
     }
 
     // Company
 
     @Override
     public Company getCompany(Uid uid, OperationOptions options, Set<String> fetchFieldsSet) {
+        if (isReferenceCacheEnabled()) {
+            return companyCache.getByUid(uid.getUidValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getCompanies(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
         // No API to fetch by uid currently.
         // We need to fetch all companies and filter them by name.
         final AtomicReference<Company> result = new AtomicReference<>();
@@ -490,13 +569,18 @@ public class SmartHRRESTClient implements SmartHRClient {
                 return false;
             }
             return true;
-        }, options, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
+        }, null, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
 
         return result.get();
     }
 
     @Override
     public Company getCompany(Name name, OperationOptions options, Set<String> fetchFieldsSet) {
+        if (isReferenceCacheEnabled()) {
+            return companyCache.getByName(name.getNameValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getCompanies(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
         // No API to fetch by name currently.
         // We need to fetch all companies and filter them by name.
         final AtomicReference<Company> result = new AtomicReference<>();
@@ -507,21 +591,26 @@ public class SmartHRRESTClient implements SmartHRClient {
                 return false;
             }
             return true;
-        }, options, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
+        }, null, withField(fetchFieldsSet, "name"), configuration.getDefaultQueryPageSize(), 0);
 
         return result.get();
     }
 
     @Override
-    public int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
-        return getAll(handler, options, pageSize, pageOffset, getCompanyEndpointURL(configuration), new TypeReference<List<Company>>() {
-        }, COMPANY_OBJECT_CLASS);
+    public int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        return getAll(handler, toFieldsParams(fetchFieldsSet), pageSize, pageOffset, getCompanyEndpointURL(configuration), new TypeReference<List<Company>>() {
+        }, COMPANY_OBJECT_CLASS, scan);
     }
 
     // Biz Establishment
 
     @Override
     public BizEstablishment getBizEstablishment(Uid uid, OperationOptions options, Set<String> fetchFieldsSet) {
+        if (isReferenceCacheEnabled()) {
+            return bizEstablishmentCache.getByUid(uid.getUidValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getBizEstablishments(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
         // No API to fetch by uid currently.
         // We need to fetch all biz_establishments and filter them by name.
         final AtomicReference<BizEstablishment> result = new AtomicReference<>();
@@ -532,13 +621,18 @@ public class SmartHRRESTClient implements SmartHRClient {
                 return false;
             }
             return true;
-        }, options, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
+        }, null, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
 
         return result.get();
     }
 
     @Override
     public BizEstablishment getBizEstablishment(Name name, OperationOptions options, Set<String> fetchFieldsSet) {
+        if (isReferenceCacheEnabled()) {
+            return bizEstablishmentCache.getByName(name.getNameValue(), getReferenceCacheTTLMillis(),
+                    () -> listAll(h -> getBizEstablishments(h, null, null, configuration.getDefaultQueryPageSize(), 0)));
+        }
+
         // No API to fetch by name currently.
         // We need to fetch all biz_establishments and filter them by name.
         final AtomicReference<BizEstablishment> result = new AtomicReference<>();
@@ -549,19 +643,36 @@ public class SmartHRRESTClient implements SmartHRClient {
                 return false;
             }
             return true;
-        }, options, fetchFieldsSet, configuration.getDefaultQueryPageSize(), 0);
+        }, null, withField(fetchFieldsSet, "name"), configuration.getDefaultQueryPageSize(), 0);
 
         return result.get();
     }
 
     @Override
-    public int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
-        return getAll(handler, options, pageSize, pageOffset, getBizEstablishmentEndpointURL(configuration), new TypeReference<List<BizEstablishment>>() {
-        }, BIZ_ESTABLISHMENT_OBJECT_CLASS);
+    public int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        return getAll(handler, toFieldsParams(fetchFieldsSet), pageSize, pageOffset, getBizEstablishmentEndpointURL(configuration), new TypeReference<List<BizEstablishment>>() {
+        }, BIZ_ESTABLISHMENT_OBJECT_CLASS, scan);
     }
 
     // Utilities
 
+    private boolean isReferenceCacheEnabled() {
+        return configuration.getReferenceCacheTTLInSeconds() > 0;
+    }
+
+    private long getReferenceCacheTTLMillis() {
+        return configuration.getReferenceCacheTTLInSeconds() * 1000L;
+    }
+
+    private <T> List<T> listAll(Function<SmartHRQueryHandler<T>, Integer> lister) {
+        List<T> all = new ArrayList<>();
+        lister.apply(o -> {
+            all.add(o);
+            return true;
+        });
+        return all;
+    }
+
     protected void callPatch(ObjectClass objectClass, String url, Uid uid, Object target) {
         try (Response response = patch(url, target)) {
             if (response.code() == 400) {
@@ -681,7 +792,110 @@ public class SmartHRRESTClient implements SmartHRClient {
         return get(url, null, 0, 0);
     }
 
+    private Response get(String url, Map<String, String> params) throws IOException {
+        return get(url, params, 0, 0);
+    }
+
+    /**
+     * Add "fields" query parameter to fetch only the requested fields.
+     * If the fetch fields aren't specified, all fields are fetched.
+     *
+     * @param params
+     * @param fetchFieldsSet
+     */
+    private static void putFields(Map<String, String> params, Set<String> fetchFieldsSet) {
+        if (fetchFieldsSet == null || fetchFieldsSet.isEmpty()) {
+            return;
+        }
+        // Sort it for the stable URL, and always fetch id for Uid
+        Set<String> fields = new TreeSet<>(fetchFieldsSet);
+        fields.add("id");
+        params.put("fields", String.join(",", fields));
+    }
+
+    private static Map<String, String> toFieldsParams(Set<String> fetchFieldsSet) {
+        Map<String, String> params = new HashMap<>();
+        putFields(params, fetchFieldsSet);
+        return params;
+    }
+
+    private static Set<String> withField(Set<String> fetchFieldsSet, String field) {
+        if (fetchFieldsSet == null || fetchFieldsSet.isEmpty()) {
+            return fetchFieldsSet;
+        }
+        Set<String> fields = new HashSet<>(fetchFieldsSet);
+        fields.add(field);
+        return fields;
+    }
+
     private Response get(String url, Map<String, String> params, int pageNumber, int pageSize) throws IOException {
+        final Request request = createGetRequest(url, params, pageNumber, pageSize);
+
+        final Response response = httpClient.newCall(request).execute();
+
+        throwExceptionIfUnauthorized(response);
+        throwExceptionIfServerError(response);
+
+        return response;
+    }
+
+    /**
+     * Call the GET API asynchronously and buffer the response body.
+     * It's used for prefetching the next pages while the handler is processing the current page.
+     *
+     * @param url
+     * @param params
+     * @param pageNumber
+     * @param pageSize
+     * @return
+     */
+    private CompletableFuture<BufferedResponse> getAsync(String url, Map<String, String> params, int pageNumber, int pageSize) {
+        // Wait for the rate limit in the caller thread. Waiting in the interceptor would occupy the dispatcher threads.
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectorIOException("Interrupted while waiting for the rate limit", e);
+        }
+
+        final Request request = createGetRequest(url, params, pageNumber, pageSize).newBuilder()
+                .tag(SmartHRRateLimiter.PermitAcquired.class, SmartHRRateLimiter.PermitAcquired.INSTANCE)
+                .build();
+        final CompletableFuture<BufferedResponse> future = new CompletableFuture<>();
+        final Call call = httpClient.newCall(request);
+
+        // Abort the in-flight call if the caller doesn't need the page anymore
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    throwExceptionIfUnauthorized(r);
+                    throwExceptionIfServerError(r);
+
+                    future.complete(new BufferedResponse(r.code(), r.message(), getPage(r), getPerPage(r), getTotalCount(r),
+                            r.body().bytes()));
+
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    private Request createGetRequest(String url, Map<String, String> params, int pageNumber, int pageSize) {
         HttpUrl.Builder httpBuilder = HttpUrl.parse(url).newBuilder();
         if (pageNumber > 0) {
             httpBuilder.addQueryParameter("page", String.valueOf(pageNumber));
@@ -693,29 +907,38 @@ public class SmartHRRESTClient implements SmartHRClient {
             params.entrySet().stream().forEach(entry -> httpBuilder.addQueryParameter(entry.getKey(), entry.getValue()));
         }
 
-        final Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(httpBuilder.build())
                 .get()
                 .build();
+    }
 
-        final Response response = httpClient.newCall(request).execute();
+    /**
+     * @param scan null, or the settings of the full scan requested by IDM. They are applied only if all pages are requested.
+     */
+    protected <T> int getAll(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize, int pageOffset,
+                             String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass,
+                             SmartHRFullScan scan) {
+        PageInfo pageInfo = newPageInfo(pageOffset, pageSize);
 
-        throwExceptionIfUnauthorized(response);
-        throwExceptionIfServerError(response);
+        SmartHRCheckpoint checkpoint = scan != null ? scan.getCheckpoint() : null;
+        if (pageInfo.isRequestedFullPage() && scan != null && scan.isPartitioned()) {
+            return getAllInPartition(handler, params, pageSize, endpointURL, valueTypeRef, objectClass,
+                    scan.getPartitionIndex(), scan.getPartitionCount());
 
-        return response;
-    }
+        } else if (pageInfo.isRequestedFullPage() && checkpoint != null) {
+            return getAllWithCheckpoint(handler, params, pageSize, endpointURL, valueTypeRef, objectClass, checkpoint);
 
-    protected <T> int getAll(SmartHRQueryHandler<T> handler, OperationOptions options, int pageSize, int pageOffset,
-                             String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass) {
-        return getAll(handler, options, null, pageSize, pageOffset, endpointURL, valueTypeRef, objectClass);
-    }
+        } else if (pageInfo.isRequestedFullPage() && scan != null && scan.getFetchQueueSize() > 0) {
+            return getAllPipelined(handler, params, pageSize, endpointURL, valueTypeRef, objectClass, scan.getFetchQueueSize());
 
-    protected <T> int getAll(SmartHRQueryHandler<T> handler, OperationOptions options, Map<String, String> params, int pageSize, int pageOffset,
-                             String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass) {
-        PageInfo pageInfo = newPageInfo(pageOffset, pageSize);
+        } else if (pageInfo.isRequestedFullPage() && configuration.getPrefetchPageCount() > 0) {
+            return getAllWithPrefetch(handler, params, pageSize, endpointURL, valueTypeRef, objectClass);
 
-        if (pageInfo.isRequestedFullPage()) {
+        } else if (pageInfo.isRequestedFullPage() && configuration.isAdaptivePageSize()) {
+            return getAllWithAdaptivePageSize(handler, params, pageSize, endpointURL, valueTypeRef, objectClass);
+
+        } else if (pageInfo.isRequestedFullPage()) {
             // Start from 1 in SmartHR
             int pageNumber = 1;
             int total;
@@ -731,17 +954,11 @@ public class SmartHRRESTClient implements SmartHRClient {
                     // Success
                     total = getTotalCount(response);
 
-                    List<T> objects = MAPPER.readValue(response.body().byteStream(), valueTypeRef);
-                    if (objects.size() == 0) {
+                    DecodedPage page = decodeEach(response.body().byteStream(), valueTypeRef, handler, 0);
+                    if (page.count == 0 || page.stopped) {
                         break;
                     }
 
-                    for (T object : objects) {
-                        if (!handler.handle(object)) {
-                            break;
-                        }
-                    }
-
                     pageNumber = getPage(response);
                     pageSize = getPerPage(response);
 
@@ -758,56 +975,473 @@ public class SmartHRRESTClient implements SmartHRClient {
             return total;
 
         } else {
+            return getPagedResults(handler, params, pageInfo, pageSize, endpointURL, valueTypeRef, objectClass);
+        }
+    }
+
+    /**
+     * Fetch the objects in [offset, offset + pageSize) of ConnId paged search.
+     * It's covered by at most 2 pages of SmartHR. If both are needed, they are requested concurrently.
+     * At most pageSize objects are passed to the handler, and the second page is discarded if the handler stops.
+     */
+    protected <T> int getPagedResults(SmartHRQueryHandler<T> handler, Map<String, String> params, PageInfo pageInfo, int pageSize,
+                                      String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass) {
+        final AtomicInteger remaining = new AtomicInteger(pageSize);
+        final SmartHRQueryHandler<T> limited = object -> handler.handle(object) && remaining.decrementAndGet() > 0;
+
+        if (pageInfo.times == 1) {
+            try (Response response = get(endpointURL, params, pageInfo.initPage, pageSize)) {
+                if (response.code() != 200) {
+                    throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                            objectClass.getObjectClassValue(), response.code(), response.message()));
+                }
+
+                // Success
+                int total = getTotalCount(response);
+                decodeEach(response.body().byteStream(), valueTypeRef, limited, pageInfo.skipCount);
+                return total;
+
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }
+
+        CompletableFuture<BufferedResponse> first = getAsync(endpointURL, params, pageInfo.initPage, pageSize);
+        CompletableFuture<BufferedResponse> second = getAsync(endpointURL, params, pageInfo.initPage + 1, pageSize);
+        try {
+            BufferedResponse response = awaitResponse(first, objectClass);
+            if (response.code != 200) {
+                throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                        objectClass.getObjectClassValue(), response.code, response.message));
+            }
+
+            // Success
+            int total = response.total;
+            DecodedPage page = decodeEach(new ByteArrayInputStream(response.body), valueTypeRef, limited, pageInfo.skipCount);
+            if (page.stopped || page.count < pageSize) {
+                // Stopped by the handler, or no more objects
+                return total;
+            }
+
+            response = awaitResponse(second, objectClass);
+            if (response.code != 200) {
+                throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                        objectClass.getObjectClassValue(), response.code, response.message));
+            }
+            decodeEach(new ByteArrayInputStream(response.body), valueTypeRef, limited, 0);
+
+            return total;
+
+        } catch (IOException e) {
+            throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+
+        } finally {
+            second.cancel(true);
+        }
+    }
+
+    /**
+     * Fetch only the pages of the partition. The pages are split into contiguous ranges by the total count,
+     * so the partitions with the same page size and sort don't overlap.
+     * The last partition reads until the end, so the objects appended during the scan aren't missed.
+     */
+    protected <T> int getAllInPartition(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize,
+                                        String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass,
+                                        int partitionIndex, int partitionCount) {
+        final boolean lastPartition = partitionIndex == partitionCount - 1;
+        // SmartHR caps "per_page", and the page ranges must be calculated by the applied page size
+        int perPage = Math.min(pageSize, SmartHRPageSizeController.MAX_PAGE_SIZE);
+        int total;
+        int[] pages;
+
+        // The first page tells the total count and the applied page size
+        try (Response response = get(endpointURL, params, 1, perPage)) {
+            if (response.code() != 200) {
+                throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                        objectClass.getObjectClassValue(), response.code(), response.message()));
+            }
+            total = getTotalCount(response);
+            if (getPerPage(response) > 0) {
+                perPage = getPerPage(response);
+            }
+
+            pages = resolvePartitionPages(total, perPage, partitionIndex, partitionCount);
+            LOG.info("Fetch {0} pages {1}-{2} for partition {3}/{4}", objectClass.getObjectClassValue(),
+                    pages[0], lastPartition ? "end" : pages[1], partitionIndex, partitionCount);
+
+            if (pages[0] == 1 && (pages[1] >= 1 || lastPartition)) {
+                DecodedPage page = decodeEach(response.body().byteStream(), valueTypeRef, handler, 0);
+                if (page.stopped || page.count < perPage) {
+                    return total;
+                }
+                pages[0] = 2;
+            }
+
+        } catch (IOException e) {
+            throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+        }
+
+        for (int pageNumber = pages[0]; lastPartition || pageNumber <= pages[1]; pageNumber++) {
+            try (Response response = get(endpointURL, params, pageNumber, perPage)) {
+                if (response.code() != 200) {
+                    throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                            objectClass.getObjectClassValue(), response.code(), response.message()));
+                }
+
+                DecodedPage page = decodeEach(response.body().byteStream(), valueTypeRef, handler, 0);
+                if (page.stopped || page.count < perPage) {
+                    break;
+                }
+
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Fetch all pages while recording the last completed page to {@link SmartHRCheckpoint}.
+     * If the scan is resumed, it starts from the recorded page with the recorded page size.
+     */
+    protected <T> int getAllWithCheckpoint(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize,
+                                           String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass,
+                                           SmartHRCheckpoint checkpoint) {
+        String sort = params != null ? params.get("sort") : null;
+        int pageNumber = checkpoint.getStartPage(sort);
+        if (pageNumber > 1) {
+            pageSize = checkpoint.getPageSize(pageSize);
+        }
+        int total;
+
+        while (true) {
+            try (Response response = get(endpointURL, params, pageNumber, pageSize)) {
+                if (response.code() != 200) {
+                    throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                            objectClass.getObjectClassValue(), response.code(), response.message()));
+                }
+
+                // Success
+                total = getTotalCount(response);
+
+                DecodedPage page = decodeEach(response.body().byteStream(), valueTypeRef, handler, 0);
+                if (page.stopped || !checkpoint.pageCompleted(pageNumber, pageSize, sort)) {
+                    break;
+                }
+                if (page.count == 0 || (pageNumber * pageSize) >= total) {
+                    break;
+                }
+                pageNumber++;
+
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Fetch all pages in the fetch stage of {@link SmartHRSearchPipeline}, and decode them in the current thread.
+     * The next pages are read while the current thread decodes and converts the objects,
+     * and at most "queueSize" fetched pages wait for the decoding.
+     */
+    protected <T> int getAllPipelined(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize,
+                                      String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass,
+                                      int queueSize) {
+        return new SmartHRSearchPipeline(queueSize).<BufferedResponse>run(response -> {
+            try {
+                DecodedPage page = decodeEach(new ByteArrayInputStream(response.body), valueTypeRef, handler, 0);
+                return page.count > 0 && !page.stopped;
+
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }, pages -> fetchPages(pages, params, pageSize, endpointURL, objectClass));
+    }
+
+    private int fetchPages(Predicate<BufferedResponse> pages, Map<String, String> params, int pageSize,
+                           String endpointURL, ObjectClass objectClass) {
+        // Start from 1 in SmartHR
+        int pageNumber = 1;
+        int total;
+
+        while (true) {
+            try (Response response = get(endpointURL, params, pageNumber, pageSize)) {
+                if (response.code() != 200) {
+                    throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                            objectClass.getObjectClassValue(), response.code(), response.message()));
+                }
+
+                // Success
+                total = getTotalCount(response);
+                BufferedResponse page = new BufferedResponse(response.code(), response.message(), getPage(response),
+                        getPerPage(response), total, response.body().bytes());
+
+                // Stop if the decoding stage is cancelled
+                if (!pages.test(page)) {
+                    break;
+                }
+
+                if (page.page > 0 && page.perPage > 0) {
+                    pageNumber = page.page;
+                    pageSize = page.perPage;
+                }
+                if ((pageNumber * pageSize) < total) {
+                    pageNumber++;
+                    continue;
+                }
+                break;
+
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Fetch all pages while adjusting the page size by {@link SmartHRPageSizeController}.
+     */
+    protected <T> int getAllWithAdaptivePageSize(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize,
+                                                 String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass) {
+        SmartHRPageSizeController controller = SmartHRPageSizeController.getInstance(endpointURL, objectClass,
+                pageSize, configuration.getReadTimeoutInSeconds() * 1000L);
+
+        int currentPageSize = controller.getPageSize();
+        int fetched = 0;
+        int total;
+
+        while (true) {
             // Start from 1 in SmartHR
-            int pageNumber = pageInfo.initPage;
-            int total = 0;
+            int pageNumber = fetched / currentPageSize + 1;
 
-            for (int i = 0; i < pageInfo.times; i++) {
-                final int skipCount = i == 0 ? pageInfo.skipCount : 0;
+            long start = System.nanoTime();
+            try (Response response = get(endpointURL, params, pageNumber, currentPageSize)) {
+                long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 
-                try (Response response = get(endpointURL, params, pageNumber, pageSize)) {
-                    if (response.code() != 200) {
-                        ErrorResponse error = MAPPER.readValue(response.body().byteStream(), ErrorResponse.class);
-                        throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
-                                objectClass.getObjectClassValue(), response.code(), response.message()));
-                    }
+                if (response.code() != 200) {
+                    throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                            objectClass.getObjectClassValue(), response.code(), response.message()));
+                }
 
-                    // Success
-                    total = getTotalCount(response);
+                // Success
+                total = getTotalCount(response);
 
-                    List<T> objects = MAPPER.readValue(response.body().byteStream(), valueTypeRef);
-                    if (objects.size() == 0) {
-                        break;
-                    }
+                CountingInputStream body = new CountingInputStream(response.body().byteStream());
+                DecodedPage page = decodeEach(body, valueTypeRef, handler, 0);
+                if (page.count == 0 || page.stopped) {
+                    break;
+                }
 
-                    int count = 0;
-                    for (T object : objects) {
-                        if (count < skipCount) {
-                            count++;
-                            continue;
-                        }
+                fetched = (pageNumber - 1) * currentPageSize + page.count;
+                if (page.count < currentPageSize || fetched >= total) {
+                    break;
+                }
 
-                        if (!handler.handle(object)) {
-                            break;
-                        }
-                    }
+                currentPageSize = controller.next(currentPageSize, fetched, latencyMillis, body.getCount(), page.count);
 
-                    pageNumber = getPage(response);
-                    pageSize = getPerPage(response);
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }
+        return total;
+    }
 
-                    if ((pageNumber * pageSize) < total) {
-                        pageNumber++;
-                        continue;
-                    }
+    /**
+     * Fetch all pages while prefetching up to "prefetchPageCount" subsequent pages concurrently.
+     * The objects are passed to the handler in the page order, and at most "prefetchPageCount" pages
+     * are held in memory in addition to the page being processed.
+     */
+    protected <T> int getAllWithPrefetch(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize,
+                                         String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass) {
+        final Deque<CompletableFuture<BufferedResponse>> prefetched = new ArrayDeque<>();
+
+        try {
+            return getAllWithPrefetch(handler, params, pageSize, endpointURL, valueTypeRef, objectClass, prefetched);
+        } finally {
+            // Abort the remaining prefetched pages if the handler stopped the scan or it failed
+            prefetched.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private <T> int getAllWithPrefetch(SmartHRQueryHandler<T> handler, Map<String, String> params, int pageSize,
+                                       String endpointURL, TypeReference<List<T>> valueTypeRef, ObjectClass objectClass,
+                                       Deque<CompletableFuture<BufferedResponse>> prefetched) {
+        final int prefetchPageCount = configuration.getPrefetchPageCount();
+
+        int total;
+        int perPage;
+        int lastPage;
+        int nextPageToRequest;
+
+        // Fetch the first page synchronously to find how many pages there are
+        try (Response response = get(endpointURL, params, 1, pageSize)) {
+            if (response.code() != 200) {
+                throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                        objectClass.getObjectClassValue(), response.code(), response.message()));
+            }
+
+            // Success
+            total = getTotalCount(response);
+            perPage = getPerPage(response) > 0 ? getPerPage(response) : pageSize;
+            lastPage = total > 0 && perPage > 0 ? (total + perPage - 1) / perPage : 1;
+
+            // Start fetching the next pages before handling the current page
+            nextPageToRequest = 2;
+            while (nextPageToRequest <= lastPage && prefetched.size() < prefetchPageCount) {
+                prefetched.add(getAsync(endpointURL, params, nextPageToRequest++, perPage));
+            }
+
+            DecodedPage page = decodeEach(response.body().byteStream(), valueTypeRef, handler, 0);
+            if (page.stopped) {
+                return total;
+            }
+
+        } catch (IOException e) {
+            throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+        }
+
+        while (!prefetched.isEmpty()) {
+            BufferedResponse response = awaitResponse(prefetched.poll(), objectClass);
+
+            if (nextPageToRequest <= lastPage) {
+                prefetched.add(getAsync(endpointURL, params, nextPageToRequest++, perPage));
+            }
+
+            if (response.code != 200) {
+                throw new ConnectorIOException(String.format("Failed to get SmartHR %s. statusCode: %d, message: %s",
+                        objectClass.getObjectClassValue(), response.code, response.message));
+            }
 
+            try {
+                DecodedPage page = decodeEach(new ByteArrayInputStream(response.body), valueTypeRef, handler, 0);
+                if (page.count == 0 || page.stopped) {
                     break;
+                }
 
-                } catch (IOException e) {
-                    throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            } catch (IOException e) {
+                throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e);
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Decode the JSON array of the list API response one element at a time and pass it to the handler.
+     * The page isn't materialized as a list, so each object can be collected as soon as the handler returns.
+     *
+     * @param body         response body stream
+     * @param valueTypeRef type of the list
+     * @param handler      handler for the decoded objects
+     * @param skipCount    number of the leading objects which are decoded but not passed to the handler
+     * @return the result of the decoding
+     * @throws IOException
+     */
+    private <T> DecodedPage decodeEach(InputStream body, TypeReference<List<T>> valueTypeRef,
+                                       SmartHRQueryHandler<T> handler, int skipCount) throws IOException {
+        JavaType elementType = MAPPER.getTypeFactory().constructType(valueTypeRef).getContentType();
+        ObjectReader reader = MAPPER.readerFor(elementType);
+
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ConnectorIOException("Unexpected SmartHR list API response. It's not JSON array");
+            }
+            // Iterate the elements of the array instead of the array itself
+            parser.clearCurrentToken();
+
+            int count = 0;
+            try (MappingIterator<T> iterator = reader.readValues(parser)) {
+                while (iterator.hasNextValue()) {
+                    T object = iterator.nextValue();
+                    count++;
+
+                    if (count <= skipCount) {
+                        continue;
+                    }
+                    if (!handler.handle(object)) {
+                        return new DecodedPage(count, true);
+                    }
                 }
             }
+            return new DecodedPage(count, false);
+        }
+    }
 
-            return total;
+    protected static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        protected CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    protected static class DecodedPage {
+        public final int count;
+        public final boolean stopped;
+
+        public DecodedPage(int count, boolean stopped) {
+            this.count = count;
+            this.stopped = stopped;
+        }
+    }
+
+    private BufferedResponse awaitResponse(CompletableFuture<BufferedResponse> future, ObjectClass objectClass) {
+        try {
+            return future.join();
+
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ConnectorException) {
+                throw (ConnectorException) e.getCause();
+            }
+            throw new ConnectorIOException(String.format("Failed to call SmartHR list %s API", objectClass.getObjectClassValue()), e.getCause());
+        }
+    }
+
+    protected static class BufferedResponse {
+        public final int code;
+        public final String message;
+        public final int page;
+        public final int perPage;
+        public final int total;
+        public final byte[] body;
+
+        public BufferedResponse(int code, String message, int page, int perPage, int total, byte[] body) {
+            this.code = code;
+            this.message = message;
+            this.page = page;
+            this.perPage = perPage;
+            this.total = total;
+            this.body = body;
         }
     }
 
@@ -875,78 +1509,66 @@ public class SmartHRRESTClient implements SmartHRClient {
     private Response post(String url, Object body) throws IOException {
         RequestBody requestBody = createJsonRequestBody(body);
 
-        for (int i = 0; i < 2; i++) {
-            final Request request = new Request.Builder()
-                    .url(url)
-                    .post(requestBody)
-                    .build();
-
-            final Response response = httpClient.newCall(request).execute();
+        final Request request = new Request.Builder()
+                .url(url)
+                .post(requestBody)
+                .build();
 
-            throwExceptionIfUnauthorized(response);
-            throwExceptionIfServerError(response);
+        // Transient errors are retried by the interceptor if it's safe
+        final Response response = httpClient.newCall(request).execute();
 
-            return response;
-        }
+        throwExceptionIfUnauthorized(response);
+        throwExceptionIfServerError(response);
 
-        throw new ConnectorIOException("Failed to call post API");
+        return response;
     }
 
     private Response put(String url, Object body) throws IOException {
         RequestBody requestBody = createJsonRequestBody(body);
 
-        for (int i = 0; i < 2; i++) {
-            final Request request = new Request.Builder()
-                    .url(url)
-                    .put(requestBody)
-                    .build();
-
-            final Response response = httpClient.newCall(request).execute();
+        final Request request = new Request.Builder()
+                .url(url)
+                .put(requestBody)
+                .build();
 
-            throwExceptionIfUnauthorized(response);
-            throwExceptionIfServerError(response);
+        // Transient errors are retried by the interceptor if it's safe
+        final Response response = httpClient.newCall(request).execute();
 
-            return response;
-        }
+        throwExceptionIfUnauthorized(response);
+        throwExceptionIfServerError(response);
 
-        throw new ConnectorIOException("Failed to call post API");
+        return response;
     }
 
     private Response patch(String url, Object body) throws IOException {
         RequestBody requestBody = createJsonRequestBody(body);
 
-        for (int i = 0; i < 2; i++) {
-            final Request request = new Request.Builder()
-                    .url(url)
-                    .patch(requestBody)
-                    .build();
-
-            final Response response = httpClient.newCall(request).execute();
+        final Request request = new Request.Builder()
+                .url(url)
+                .patch(requestBody)
+                .build();
 
-            throwExceptionIfUnauthorized(response);
-            throwExceptionIfServerError(response);
+        // Transient errors are retried by the interceptor if it's safe
+        final Response response = httpClient.newCall(request).execute();
 
-            return response;
-        }
+        throwExceptionIfUnauthorized(response);
+        throwExceptionIfServerError(response);
 
-        throw new ConnectorIOException("Failed to call patch API");
+        return response;
     }
 
     private Response delete(String url) throws IOException {
-        for (int i = 0; i < 2; i++) {
-            final Request request = new Request.Builder()
-                    .url(url)
-                    .delete()
-                    .build();
-
-            final Response response = httpClient.newCall(request).execute();
+        final Request request = new Request.Builder()
+                .url(url)
+                .delete()
+                .build();
 
-            throwExceptionIfUnauthorized(response);
-            throwExceptionIfServerError(response);
+        // Transient errors are retried by the interceptor if it's safe
+        final Response response = httpClient.newCall(request).execute();
 
-            return response;
-        }
+        throwExceptionIfUnauthorized(response);
+        throwExceptionIfServerError(response);
 
-        throw new ConnectorIOException("Failed to call delete API");
+        return response;
     }
 }
@@ -0,0 +1,137 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.rest;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.identityconnectors.common.StringUtil;
+import org.identityconnectors.common.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interceptor to schedule the requests with {@link SmartHRRateLimiter}.
+ * When SmartHR responds HTTP 429, it waits for "Retry-After" and sends the request again.
+ * When the rate limit headers tell that no request remains, the next requests wait for the reset time.
+ */
+public class SmartHRRateLimitInterceptor implements Interceptor {
+
+    private static final Log LOG = Log.getLog(SmartHRRateLimitInterceptor.class);
+
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+    private final SmartHRRateLimiter limiter;
+    private final long maxWaitMillis;
+
+    public SmartHRRateLimitInterceptor(SmartHRRateLimiter limiter, int maxWaitInSeconds) {
+        this.limiter = limiter;
+        this.maxWaitMillis = TimeUnit.SECONDS.toMillis(maxWaitInSeconds);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        long waited = 0;
+        // The permit of the async call is acquired by the caller thread, not to block the dispatcher threads
+        boolean acquired = chain.request().tag(SmartHRRateLimiter.PermitAcquired.class) != null;
+
+        while (true) {
+            if (!acquired) {
+                try {
+                    limiter.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+                }
+            }
+            acquired = false;
+
+            Response response = chain.proceed(chain.request());
+
+            long resetMillis = getRateLimitResetMillis(response);
+            if (resetMillis > 0) {
+                limiter.blockFor(Math.min(resetMillis, maxWaitMillis));
+            }
+
+            if (response.code() != 429) {
+                return response;
+            }
+
+            long retryAfterMillis = getRetryAfterMillis(response);
+            if (waited + retryAfterMillis > maxWaitMillis) {
+                LOG.warn("Gave up waiting for the SmartHR API rate limit. waited: {0}ms", waited);
+                return response;
+            }
+
+            LOG.info("Reached the SmartHR API rate limit. Retry after {0}ms", retryAfterMillis);
+            response.close();
+
+            limiter.blockFor(retryAfterMillis);
+            waited += retryAfterMillis;
+        }
+    }
+
+    private long getRetryAfterMillis(Response response) {
+        String value = response.header("Retry-After");
+        if (StringUtil.isEmpty(value)) {
+            return Math.max(DEFAULT_RETRY_AFTER_MILLIS, getRateLimitResetMillis(response));
+        }
+        try {
+            // delay-seconds
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException ignore) {
+        }
+        try {
+            // HTTP-date
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (DateTimeParseException e) {
+            LOG.warn("Invalid Retry-After header: {0}", value);
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+    }
+
+    /**
+     * Returns the time until the rate limit is reset if no request remains in the current window.
+     *
+     * @param response
+     * @return time in milliseconds, or 0 if requests remain
+     */
+    private long getRateLimitResetMillis(Response response) {
+        String remaining = response.header("x-rate-limit-remaining");
+        String reset = response.header("x-rate-limit-reset");
+        if (StringUtil.isEmpty(remaining) || StringUtil.isEmpty(reset)) {
+            return 0;
+        }
+        try {
+            if (Long.parseLong(remaining.trim()) > 0) {
+                return 0;
+            }
+            // Unix time in seconds
+            long resetAt = TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim()));
+            return Math.max(0, resetAt - System.currentTimeMillis());
+
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid rate limit headers. remaining: {0}, reset: {1}", remaining, reset);
+            return 0;
+        }
+    }
+}
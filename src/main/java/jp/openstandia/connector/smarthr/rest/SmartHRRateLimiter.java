@@ -0,0 +1,122 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.rest;
+
+import jp.openstandia.connector.smarthr.SmartHRConfiguration;
+import org.identityconnectors.common.logging.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter shared by the connector instances for the same SmartHR tenant.
+ * A caller which can't get a permit reserves the next one and waits for it, so the requests are queued
+ * instead of being rejected by SmartHR.
+ * Also, it blocks all the callers while SmartHR tells that the rate limit has been reached.
+ */
+public class SmartHRRateLimiter {
+
+    private static final Log LOG = Log.getLog(SmartHRRateLimiter.class);
+
+    private static final Map<String, SmartHRRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    /**
+     * Tag of the request whose permit has been acquired before the call is enqueued.
+     * The rate limit interceptor doesn't acquire a permit again for it.
+     */
+    public static final class PermitAcquired {
+        public static final PermitAcquired INSTANCE = new PermitAcquired();
+
+        private PermitAcquired() {
+        }
+    }
+
+    private final int permitsPerSecond;
+    private double storedPermits;
+    private long lastRefillNanos;
+    private long blockedUntilNanos;
+
+    public static SmartHRRateLimiter getInstance(SmartHRConfiguration configuration) {
+        String url = configuration.getEndpointURL();
+        int permitsPerSecond = configuration.getRateLimitPerSecond();
+
+        // Key by endpoint URL and rate. The endpoint URL is unique per tenant, and the connector instances
+        // with different rates don't reset each other's bucket.
+        String key = url + "#" + permitsPerSecond;
+        SmartHRRateLimiter limiter = LIMITERS.get(key);
+        if (limiter != null) {
+            return limiter;
+        }
+
+        if (LIMITERS.keySet().stream().anyMatch(k -> k.startsWith(url + "#"))) {
+            LOG.warn("Another rate limit is configured for the same SmartHR tenant. Each rate is applied separately. rate: {0}",
+                    permitsPerSecond);
+        }
+        return LIMITERS.computeIfAbsent(key, k -> new SmartHRRateLimiter(permitsPerSecond));
+    }
+
+    SmartHRRateLimiter(int permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.storedPermits = permitsPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+        this.blockedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * Wait until the caller can send a request.
+     *
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            waitNanos = Math.max(0, blockedUntilNanos - now);
+
+            if (permitsPerSecond > 0) {
+                // Refill the bucket, the capacity is 1 second's worth of permits
+                storedPermits = Math.min(permitsPerSecond,
+                        storedPermits + (now - lastRefillNanos) * permitsPerSecond / (double) TimeUnit.SECONDS.toNanos(1));
+                lastRefillNanos = now;
+
+                // Reserve a permit. Negative means the permit is reserved in the future.
+                storedPermits -= 1;
+                if (storedPermits < 0) {
+                    waitNanos = Math.max(waitNanos,
+                            (long) (-storedPermits / permitsPerSecond * TimeUnit.SECONDS.toNanos(1)));
+                }
+            }
+        }
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Block all the callers for the given time.
+     *
+     * @param millis time to block in milliseconds
+     */
+    public synchronized void blockFor(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - blockedUntilNanos > 0) {
+            blockedUntilNanos = until;
+        }
+    }
+}
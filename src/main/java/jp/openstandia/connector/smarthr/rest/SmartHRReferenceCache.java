@@ -0,0 +1,173 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.rest;
+
+import org.identityconnectors.common.logging.Log;
+import org.identityconnectors.framework.common.objects.ObjectClass;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of the small reference object classes (employment_type, job_title, company and biz_establishment)
+ * shared by the connector instances for the same SmartHR tenant.
+ * All objects of the object class are loaded at once and indexed by Uid (case-insensitive) and by Name (case-sensitive).
+ * The cache is discarded when the TTL expires or it's invalidated.
+ * Also, it's reloaded on a miss, because the object might be created by another node or out of band.
+ * The reload on a miss happens at most once per {@link #MISS_RELOAD_INTERVAL_MILLIS}.
+ *
+ * @param <T> the type of the cached objects
+ */
+public class SmartHRReferenceCache<T> {
+
+    private static final Log LOG = Log.getLog(SmartHRReferenceCache.class);
+
+    private static final Map<String, SmartHRReferenceCache<?>> CACHES = new ConcurrentHashMap<>();
+
+    public static final long MISS_RELOAD_INTERVAL_MILLIS = 5000;
+
+    private final ObjectClass objectClass;
+    private final Function<T, String> uidGetter;
+    private final Function<T, String> nameGetter;
+
+    private volatile Snapshot<T> snapshot;
+    private long generation;
+
+    @SuppressWarnings("unchecked")
+    public static <T> SmartHRReferenceCache<T> getInstance(String endpointURL, ObjectClass objectClass,
+                                                           Function<T, String> uidGetter, Function<T, String> nameGetter) {
+        // Key by endpoint URL, it's unique per tenant
+        return (SmartHRReferenceCache<T>) CACHES.computeIfAbsent(toKey(endpointURL, objectClass),
+                key -> new SmartHRReferenceCache<>(objectClass, uidGetter, nameGetter));
+    }
+
+    /**
+     * Discard all the cached reference objects of the tenant.
+     *
+     * @param endpointURL
+     */
+    public static void invalidateAll(String endpointURL) {
+        CACHES.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(endpointURL + "#"))
+                .forEach(entry -> entry.getValue().invalidate());
+    }
+
+    private static String toKey(String endpointURL, ObjectClass objectClass) {
+        return endpointURL + "#" + objectClass.getObjectClassValue();
+    }
+
+    SmartHRReferenceCache(ObjectClass objectClass, Function<T, String> uidGetter, Function<T, String> nameGetter) {
+        this.objectClass = objectClass;
+        this.uidGetter = uidGetter;
+        this.nameGetter = nameGetter;
+    }
+
+    public T getByUid(String uid, long ttlMillis, Supplier<List<T>> loader) {
+        return getByUid(uid, ttlMillis, MISS_RELOAD_INTERVAL_MILLIS, loader);
+    }
+
+    public T getByUid(String uid, long ttlMillis, long missReloadIntervalMillis, Supplier<List<T>> loader) {
+        return get(s -> s.byUid.get(uid.toLowerCase()), ttlMillis, missReloadIntervalMillis, loader);
+    }
+
+    public T getByName(String name, long ttlMillis, Supplier<List<T>> loader) {
+        return getByName(name, ttlMillis, MISS_RELOAD_INTERVAL_MILLIS, loader);
+    }
+
+    public T getByName(String name, long ttlMillis, long missReloadIntervalMillis, Supplier<List<T>> loader) {
+        return get(s -> s.byName.get(name), ttlMillis, missReloadIntervalMillis, loader);
+    }
+
+    private T get(Function<Snapshot<T>, T> lookup, long ttlMillis, long missReloadIntervalMillis, Supplier<List<T>> loader) {
+        Snapshot<T> current = getSnapshot(ttlMillis, loader);
+        T found = lookup.apply(current);
+
+        if (found == null && current.isExpired(missReloadIntervalMillis)) {
+            LOG.ok("Reload the {0} reference cache on a miss", objectClass.getObjectClassValue());
+            found = lookup.apply(load(loader));
+        }
+        return found;
+    }
+
+    public void invalidate() {
+        synchronized (this) {
+            generation++;
+            snapshot = null;
+        }
+    }
+
+    private Snapshot<T> getSnapshot(long ttlMillis, Supplier<List<T>> loader) {
+        Snapshot<T> current = snapshot;
+        if (current != null && !current.isExpired(ttlMillis)) {
+            return current;
+        }
+
+        return load(loader);
+    }
+
+    private Snapshot<T> load(Supplier<List<T>> loader) {
+        long loadingGeneration;
+        synchronized (this) {
+            loadingGeneration = generation;
+        }
+
+        // Load outside the lock, concurrent loads are rare and harmless
+        List<T> objects = loader.get();
+        Snapshot<T> loaded = new Snapshot<>(objects, uidGetter, nameGetter);
+
+        LOG.ok("Loaded {0} {1} objects into the reference cache", objects.size(), objectClass.getObjectClassValue());
+
+        synchronized (this) {
+            // Don't store the objects if they were invalidated while loading
+            if (generation == loadingGeneration) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private static class Snapshot<T> {
+        final Map<String, T> byUid;
+        final Map<String, T> byName;
+        final long loadedAtNanos;
+
+        Snapshot(List<T> objects, Function<T, String> uidGetter, Function<T, String> nameGetter) {
+            Map<String, T> byUid = new HashMap<>(objects.size() * 2);
+            Map<String, T> byName = new HashMap<>(objects.size() * 2);
+            for (T object : objects) {
+                byUid.put(uidGetter.apply(object).toLowerCase(), object);
+                String name = nameGetter.apply(object);
+                if (name != null) {
+                    // Keep the first one same as the linear scan
+                    byName.putIfAbsent(name, object);
+                }
+            }
+            this.byUid = Collections.unmodifiableMap(byUid);
+            this.byName = Collections.unmodifiableMap(byName);
+            this.loadedAtNanos = System.nanoTime();
+        }
+
+        boolean isExpired(long ttlMillis) {
+            return System.nanoTime() - loadedAtNanos >= TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.rest;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.identityconnectors.common.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interceptor to retry the requests failed by transient errors with exponential backoff and jitter.
+ * <ul>
+ * <li>GET, HEAD and PUT are idempotent. They are retried on HTTP 5xx, timeouts and connection resets.</li>
+ * <li>POST, PATCH and DELETE are retried only when the connection couldn't be established,
+ * because SmartHR might have processed the request already.</li>
+ * </ul>
+ */
+public class SmartHRRetryInterceptor implements Interceptor {
+
+    private static final Log LOG = Log.getLog(SmartHRRetryInterceptor.class);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long jitterMillis;
+
+    public SmartHRRetryInterceptor(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long jitterMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        final boolean idempotent = isIdempotent(request);
+
+        for (int attempt = 1; ; attempt++) {
+            Response response;
+            try {
+                response = chain.proceed(request);
+
+            } catch (IOException e) {
+                if (attempt >= maxAttempts || chain.call().isCanceled() || !isRetryable(e, idempotent)) {
+                    throw e;
+                }
+                LOG.info("Retry {0} {1} after the failure ({2}/{3}): {4}",
+                        request.method(), request.url().encodedPath(), attempt, maxAttempts, e.toString());
+                sleep(attempt);
+                request = withoutPermit(request);
+                continue;
+            }
+
+            if (attempt >= maxAttempts || !idempotent || !isRetryable(response)) {
+                return response;
+            }
+
+            LOG.info("Retry {0} {1} after the server error ({2}/{3}): {4}",
+                    request.method(), request.url().encodedPath(), attempt, maxAttempts, response.code());
+            response.close();
+            sleep(attempt);
+            request = withoutPermit(request);
+        }
+    }
+
+    /**
+     * The permit acquired by the caller thread covers only the first attempt,
+     * so the rate limit interceptor acquires a new one for the retries.
+     */
+    private Request withoutPermit(Request request) {
+        if (request.tag(SmartHRRateLimiter.PermitAcquired.class) == null) {
+            return request;
+        }
+        return request.newBuilder()
+                .tag(SmartHRRateLimiter.PermitAcquired.class, null)
+                .build();
+    }
+
+    private boolean isIdempotent(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isRetryable(Response response) {
+        // 501 Not Implemented won't be recovered
+        return response.code() >= 500 && response.code() <= 599 && response.code() != 501;
+    }
+
+    private boolean isRetryable(IOException e, boolean idempotent) {
+        if (e instanceof ConnectException || e instanceof UnknownHostException) {
+            // The request wasn't sent
+            return true;
+        }
+        if (!idempotent) {
+            return false;
+        }
+        if (e instanceof SocketTimeoutException) {
+            return true;
+        }
+        if (e instanceof InterruptedIOException) {
+            // Interrupted by the caller
+            return false;
+        }
+        // Connection reset etc.
+        return e instanceof SocketException;
+    }
+
+    private void sleep(int attempt) throws IOException {
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        if (jitterMillis > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the retry");
+        }
+    }
+}
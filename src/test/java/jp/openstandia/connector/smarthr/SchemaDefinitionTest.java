@@ -0,0 +1,207 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaDefinitionTest {
+
+    private static SchemaDefinition createSchema() {
+        SchemaDefinition.Builder sb = SchemaDefinition.newBuilder(new ObjectClass("test"));
+        sb.addUid("id",
+                SchemaDefinition.Types.UUID,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                null,
+                (source) -> source.id,
+                "id"
+        );
+        sb.addName("emp_code",
+                SchemaDefinition.Types.STRING,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                (source, dest) -> dest.emp_code = source,
+                (source) -> source.emp_code,
+                null
+        );
+        sb.add("birth_at",
+                SchemaDefinition.Types.DATE_STRING,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                (source, dest) -> dest.birth_at = source,
+                (source) -> source.birth_at,
+                null
+        );
+        sb.add("entered_at",
+                SchemaDefinition.Types.DATE,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                (source, dest) -> dest.entered_at = source.format(DateTimeFormatter.ISO_LOCAL_DATE),
+                (source) -> source.entered_at != null ? SmartHRUtils.toZoneDateTime(source.entered_at) : null,
+                null
+        );
+        return sb.build();
+    }
+
+    @Test
+    void create() {
+        SchemaDefinition schema = createSchema();
+        ZonedDateTime date = ZonedDateTime.of(2021, 4, 1, 0, 0, 0, 0, ZoneId.systemDefault());
+
+        Set<Attribute> attrs = new HashSet<>();
+        attrs.add(new Name("001"));
+        attrs.add(AttributeBuilder.build("birth_at", date));
+        attrs.add(AttributeBuilder.build("entered_at", date));
+
+        SmartHRClient.Crew dest = schema.apply(attrs, new SmartHRClient.Crew());
+
+        assertEquals("001", dest.emp_code);
+        assertEquals("2021-04-01", dest.birth_at);
+        assertEquals("2021-04-01", dest.entered_at);
+    }
+
+    @Test
+    void read() {
+        SchemaDefinition schema = createSchema();
+
+        SmartHRClient.Crew source = new SmartHRClient.Crew();
+        source.id = "abc";
+        source.emp_code = "001";
+        source.birth_at = "2021-04-01";
+
+        ConnectorObject object = schema.toConnectorObjectBuilder(source, schema.createProjectionPlan(null), false).build();
+
+        assertEquals("abc", object.getUid().getUidValue());
+        assertEquals("001", object.getName().getNameValue());
+        assertEquals(ZonedDateTime.of(2021, 4, 1, 0, 0, 0, 0, ZoneId.systemDefault()),
+                AttributeUtil.getSingleValue(object.getAttributeByName("birth_at")));
+        assertEquals(null, object.getAttributeByName("entered_at"));
+    }
+
+    @Test
+    void hasMultiValuedAddOrRemove() {
+        SchemaDefinition schema = SmartHRCrewHandler.createSchema(new ArrayList<>()).build();
+
+        Set<AttributeDelta> single = new HashSet<>();
+        single.add(AttributeDeltaBuilder.build("email", "a@example.com"));
+        assertFalse(schema.hasMultiValuedAddOrRemove(single));
+
+        Set<AttributeDelta> multiple = new HashSet<>(single);
+        multiple.add(AttributeDeltaBuilder.build("departments", Collections.singletonList("abc"), null));
+        assertTrue(schema.hasMultiValuedAddOrRemove(multiple));
+    }
+
+    @Test
+    void isNoOp() {
+        SchemaDefinition schema = createSchema();
+
+        SmartHRClient.Crew current = new SmartHRClient.Crew();
+        current.id = "abc";
+        current.emp_code = "001";
+        current.birth_at = "2021-04-01";
+
+        Set<AttributeDelta> same = new HashSet<>();
+        same.add(AttributeDeltaBuilder.build(Name.NAME, "001"));
+        same.add(AttributeDeltaBuilder.build("birth_at",
+                ZonedDateTime.of(2021, 4, 1, 0, 0, 0, 0, ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of("UTC"))));
+        assertTrue(schema.isNoOp(same, current));
+
+        Set<AttributeDelta> changed = new HashSet<>();
+        changed.add(AttributeDeltaBuilder.build(Name.NAME, "002"));
+        assertFalse(schema.isNoOp(changed, current));
+
+        Set<AttributeDelta> cleared = new HashSet<>();
+        cleared.add(AttributeDeltaBuilder.build("birth_at"));
+        assertFalse(schema.isNoOp(cleared, current));
+    }
+
+    @Test
+    void createDateAsIs() {
+        SchemaDefinition.Builder sb = SchemaDefinition.newBuilder(new ObjectClass("test"));
+        sb.addUid("id",
+                SchemaDefinition.Types.UUID,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                null,
+                (source) -> source.id,
+                "id"
+        );
+        sb.addName("emp_code",
+                SchemaDefinition.Types.STRING,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                (source, dest) -> dest.emp_code = source,
+                (source) -> source.emp_code,
+                null
+        );
+        sb.add("updated_at",
+                SchemaDefinition.Types.DATETIME,
+                SmartHRClient.Crew.class,
+                SmartHRClient.Crew.class,
+                (source, dest) -> dest.updated_at = source.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                (source) -> source.updated_at != null ? SmartHRUtils.toZonedDateTimeFromISO(source.updated_at) : null,
+                null
+        );
+        SchemaDefinition schema = sb.build();
+        ZonedDateTime datetime = ZonedDateTime.of(2021, 4, 1, 9, 30, 0, 0, ZoneId.of("Asia/Tokyo"));
+
+        Set<Attribute> attrs = new HashSet<>();
+        attrs.add(new Name("001"));
+        attrs.add(AttributeBuilder.build("updated_at", datetime));
+
+        // DATE and DATETIME values were formatted to String before passed to the ZonedDateTime setter
+        SmartHRClient.Crew dest = assertDoesNotThrow(() -> schema.apply(attrs, new SmartHRClient.Crew()));
+
+        assertEquals("2021-04-01T09:30:00+09:00", dest.updated_at);
+    }
+
+    @Test
+    void customDateTimeFormat() {
+        SchemaDefinition.AttributeMapper<String, SmartHRClient.Crew, SmartHRClient.Crew, SmartHRClient.Crew> mapper =
+                new SchemaDefinition.AttributeMapper<>("updated_at",
+                        SchemaDefinition.Types.DATETIME_STRING,
+                        (source, dest) -> dest.updated_at = source,
+                        (source, dest) -> dest.updated_at = source,
+                        (source) -> source.updated_at,
+                        null
+                );
+        mapper.dateFormat(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
+        mapper.datetimeFormat(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"));
+        mapper.compile();
+
+        ZonedDateTime datetime = ZonedDateTime.of(2021, 4, 1, 9, 30, 0, 0, ZoneId.systemDefault());
+
+        // The datetime format is used, not the date format
+        SmartHRClient.Crew created = new SmartHRClient.Crew();
+        mapper.apply(AttributeBuilder.build("updated_at", datetime), created);
+        assertEquals("2021/04/01 09:30", created.updated_at);
+
+        SmartHRClient.Crew updated = new SmartHRClient.Crew();
+        mapper.apply(AttributeDeltaBuilder.build("updated_at", datetime), updated);
+        assertEquals("2021/04/01 09:30", updated.updated_at);
+    }
+}
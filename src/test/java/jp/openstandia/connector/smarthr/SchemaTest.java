@@ -16,11 +16,13 @@
 package jp.openstandia.connector.smarthr;
 
 import jp.openstandia.connector.smarthr.testutil.AbstractTest;
+import org.identityconnectors.framework.api.operations.SyncApiOp;
 import org.identityconnectors.framework.common.objects.ObjectClassInfo;
 import org.identityconnectors.framework.common.objects.Schema;
 import org.junit.jupiter.api.Test;
 
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,5 +48,11 @@ class SchemaTest extends AbstractTest {
         assertTrue(jobTitle.isPresent());
         assertTrue(company.isPresent());
         assertTrue(bizEstablishment.isPresent());
+
+        // Only crew and department support the live synchronization
+        Set<ObjectClassInfo> syncSupported = schema.getSupportedObjectClassesByOperation(SyncApiOp.class);
+        assertEquals(2, syncSupported.size());
+        assertTrue(syncSupported.contains(crew.get()));
+        assertTrue(syncSupported.contains(department.get()));
     }
 }
@@ -0,0 +1,159 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.testutil.AbstractTest;
+import org.identityconnectors.framework.api.ConnectorFacade;
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static jp.openstandia.connector.smarthr.SmartHRCrewHandler.CREW_OBJECT_CLASS;
+import static jp.openstandia.connector.smarthr.SmartHRDepartmentHandler.DEPARTMENT_OBJECT_CLASS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTest extends AbstractTest {
+
+    private static SmartHRClient.Crew newCrew(String id, String empCode, String email) {
+        SmartHRClient.Crew crew = new SmartHRClient.Crew();
+        crew.id = id;
+        crew.emp_code = empCode;
+        crew.email = email;
+        return crew;
+    }
+
+    private static List<ConnectorObject> search(ConnectorFacade facade, ObjectClass objectClass, OperationOptions options) {
+        List<ConnectorObject> results = new ArrayList<>();
+        facade.search(objectClass, null, results::add, options);
+        return results;
+    }
+
+    @Test
+    void fetchOnlyRequestedAttributes() {
+        SmartHRClient.Crew crew = newCrew("1", "001", "a@example.com");
+        crew.last_name = "Yamada";
+        mockClient.crews.add(crew);
+
+        // ATTRIBUTES_TO_GET without RETURN_DEFAULT_ATTRIBUTES doesn't return the defaults
+        List<ConnectorObject> results = search(connector, CREW_OBJECT_CLASS, new OperationOptionsBuilder()
+                .setAttributesToGet("email")
+                .build());
+
+        assertEquals(1, results.size());
+        assertEquals("1", results.get(0).getUid().getUidValue());
+        assertEquals("001", results.get(0).getName().getNameValue());
+        assertEquals("a@example.com", AttributeUtil.getStringValue(results.get(0).getAttributeByName("email")));
+        assertNull(results.get(0).getAttributeByName("last_name"));
+        assertEquals(new HashSet<>(Arrays.asList("id", "emp_code", "email")), mockClient.fetchFields.get(0));
+
+        // With RETURN_DEFAULT_ATTRIBUTES, the defaults are returned too
+        results = search(connector, CREW_OBJECT_CLASS, new OperationOptionsBuilder()
+                .setReturnDefaultAttributes(true)
+                .setAttributesToGet("email")
+                .build());
+
+        assertEquals("Yamada", AttributeUtil.getStringValue(results.get(0).getAttributeByName("last_name")));
+        assertTrue(mockClient.fetchFields.get(1).contains("last_name"));
+    }
+
+    @Test
+    void fetchParentOfDepartment() {
+        SmartHRClient.Department parent = new SmartHRClient.Department();
+        parent.id = "p";
+        parent.code = "P";
+        SmartHRClient.Department dept = new SmartHRClient.Department();
+        dept.id = "c";
+        dept.code = "C";
+        dept.parent = parent;
+        mockClient.departments.add(dept);
+
+        List<ConnectorObject> results = search(connector, DEPARTMENT_OBJECT_CLASS, new OperationOptionsBuilder()
+                .setAttributesToGet("parent_id")
+                .build());
+
+        // parent_id is read from the nested parent object, so "parent" is fetched instead of "parent_id"
+        assertEquals(1, results.size());
+        assertEquals("p", AttributeUtil.getStringValue(results.get(0).getAttributeByName("parent_id")));
+        assertTrue(mockClient.fetchFields.get(0).contains("parent"));
+        assertFalse(mockClient.fetchFields.get(0).contains("parent_id"));
+    }
+
+    @Test
+    void countOnly() {
+        SmartHRClient.Crew crew1 = newCrew("1", "001", "a@example.com");
+        crew1.emp_status = "employed";
+        SmartHRClient.Crew crew2 = newCrew("2", "002", "b@example.com");
+        crew2.emp_status = "absent";
+        SmartHRClient.Crew crew3 = newCrew("3", "003", "c@example.com");
+        crew3.emp_status = "employed";
+        mockClient.crews.addAll(Arrays.asList(crew1, crew2, crew3));
+
+        // No attributes to get and page size 0 requests only the total count
+        OperationOptions countOnly = new OperationOptionsBuilder()
+                .setAttributesToGet()
+                .setPageSize(0)
+                .build();
+        List<ConnectorObject> results = new ArrayList<>();
+
+        SearchResult result = connector.search(CREW_OBJECT_CLASS, null, results::add, countOnly);
+
+        assertTrue(results.isEmpty());
+        assertEquals(3, result.getRemainingPagedResults());
+        assertEquals(Collections.singletonList("getCrews"), mockClient.calls);
+        assertEquals(new HashSet<>(Arrays.asList("id", "emp_code")), mockClient.fetchFields.get(0));
+
+        // The pushed-down filter is counted by SmartHR too
+        result = connector.search(CREW_OBJECT_CLASS,
+                FilterBuilder.equalTo(AttributeBuilder.build("emp_status", "employed")), results::add, countOnly);
+
+        assertTrue(results.isEmpty());
+        assertEquals(2, result.getRemainingPagedResults());
+        assertEquals(Arrays.asList("getCrews", "getCrews"), mockClient.calls);
+    }
+
+    @Test
+    void flagUnchangedOnlyIfRequested() {
+        SmartHRConfiguration configuration = newConfiguration();
+        configuration.setEndpointURL("http://localhost:8080/flag-unchanged/api");
+        configuration.setSuppressUnchangedObjects(true);
+        ConnectorFacade facade = newFacade(configuration);
+
+        mockClient.crews.add(newCrew("1", "001", "a@example.com"));
+        mockClient.crews.add(newCrew("2", "002", "b@example.com"));
+
+        // Not returned by default
+        List<ConnectorObject> results = search(facade, CREW_OBJECT_CLASS, new OperationOptionsBuilder().build());
+        assertEquals(2, results.size());
+        assertNull(results.get(0).getAttributeByName(SmartHRHashStore.UNCHANGED_ATTR));
+
+        mockClient.crews.set(1, newCrew("2", "002", "changed@example.com"));
+
+        results = search(facade, CREW_OBJECT_CLASS, new OperationOptionsBuilder()
+                .setReturnDefaultAttributes(true)
+                .setAttributesToGet(SmartHRHashStore.UNCHANGED_ATTR)
+                .build());
+        assertEquals(2, results.size());
+        assertEquals(Boolean.TRUE, AttributeUtil.getBooleanValue(results.get(0).getAttributeByName(SmartHRHashStore.UNCHANGED_ATTR)));
+        assertEquals(Boolean.FALSE, AttributeUtil.getBooleanValue(results.get(1).getAttributeByName(SmartHRHashStore.UNCHANGED_ATTR)));
+        assertEquals("changed@example.com", AttributeUtil.getStringValue(results.get(1).getAttributeByName("email")));
+    }
+}
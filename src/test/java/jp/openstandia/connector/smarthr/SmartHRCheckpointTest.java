@@ -0,0 +1,125 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.identityconnectors.framework.common.objects.OperationOptions;
+import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static jp.openstandia.connector.smarthr.SmartHRCrewHandler.CREW_OBJECT_CLASS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRCheckpointTest {
+
+    private static ConnectorObject newObject(String name) {
+        return new ConnectorObjectBuilder()
+                .setUid("uid-" + name)
+                .setName(name)
+                .build();
+    }
+
+    private static SmartHRConfiguration newConfiguration(Path dir) {
+        SmartHRConfiguration configuration = new SmartHRConfiguration();
+        configuration.setEndpointURL("https://checkpoint-test.example.com/");
+        configuration.setCheckpointDirectory(dir.toString());
+        return configuration;
+    }
+
+    private static OperationOptions resume() {
+        return new OperationOptionsBuilder().setOption(SmartHRCheckpoint.RESUME_OPTION, true).build();
+    }
+
+    /**
+     * Simulate the paged scan of SmartHRRESTClient.
+     */
+    private static void scan(SmartHRCheckpoint checkpoint, List<List<ConnectorObject>> pages, int failAtPage) {
+        int pageNumber = checkpoint.getStartPage("emp_code");
+        for (; pageNumber <= pages.size(); pageNumber++) {
+            if (pageNumber == failAtPage) {
+                throw new IllegalStateException("Failed");
+            }
+            for (ConnectorObject o : pages.get(pageNumber - 1)) {
+                checkpoint.handle(o);
+            }
+            checkpoint.pageCompleted(pageNumber, 2, "emp_code");
+        }
+        checkpoint.complete();
+    }
+
+    @Test
+    void resumeFromLastCompletedPage(@TempDir Path dir) throws IOException {
+        SmartHRConfiguration configuration = newConfiguration(dir);
+        List<List<ConnectorObject>> pages = Arrays.asList(
+                Arrays.asList(newObject("a"), newObject("b")),
+                Arrays.asList(newObject("c"), newObject("d")),
+                Arrays.asList(newObject("e")));
+
+        List<String> first = new ArrayList<>();
+        SmartHRCheckpoint checkpoint = SmartHRCheckpoint.start(configuration, "test", CREW_OBJECT_CLASS,
+                new OperationOptionsBuilder().build(), o -> first.add(o.getName().getNameValue()));
+        assertThrows(IllegalStateException.class, () -> scan(checkpoint, pages, 3));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), first);
+        assertFalse(checkpoint.isResumed());
+
+        List<String> resumed = new ArrayList<>();
+        SmartHRCheckpoint resumedCheckpoint = SmartHRCheckpoint.start(configuration, "test", CREW_OBJECT_CLASS,
+                resume(), o -> resumed.add(o.getName().getNameValue()));
+        assertEquals(2, resumedCheckpoint.getPageSize(50));
+        scan(resumedCheckpoint, pages, -1);
+        assertTrue(resumedCheckpoint.isResumed());
+
+        // Page 2 is fetched again, but the delivered objects are skipped
+        assertEquals(Arrays.asList("e"), resumed);
+        // Completed
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void deliverWholePageIfLastObjectIsMissing(@TempDir Path dir) {
+        SmartHRConfiguration configuration = newConfiguration(dir);
+        List<List<ConnectorObject>> pages = Arrays.asList(
+                Arrays.asList(newObject("a"), newObject("b")),
+                Arrays.asList(newObject("c"), newObject("d")));
+
+        SmartHRCheckpoint checkpoint = SmartHRCheckpoint.start(configuration, "test", CREW_OBJECT_CLASS,
+                new OperationOptionsBuilder().build(), o -> true);
+        assertThrows(IllegalStateException.class, () -> scan(checkpoint, pages, 2));
+
+        // "b" has been deleted and the page is shifted
+        List<List<ConnectorObject>> changed = Arrays.asList(
+                Arrays.asList(newObject("a"), newObject("c")),
+                Arrays.asList(newObject("d")));
+
+        List<String> resumed = new ArrayList<>();
+        scan(SmartHRCheckpoint.start(configuration, "test", CREW_OBJECT_CLASS,
+                resume(), o -> resumed.add(o.getName().getNameValue())), changed, -1);
+
+        assertEquals(Arrays.asList("a", "c", "d"), resumed);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRFilterTranslatorTest {
+
+    private final SchemaDefinition schema = SmartHRCrewHandler.createSchema(Collections.emptyList()).build();
+
+    private SmartHRFilter translate(Attribute attr) {
+        return translate(FilterBuilder.equalTo(attr));
+    }
+
+    private SmartHRFilter translate(Filter filter) {
+        SmartHRFilterTranslator translator = new SmartHRFilterTranslator(SmartHRCrewHandler.CREW_OBJECT_CLASS,
+                new OperationOptionsBuilder().build(), schema);
+        List<SmartHRFilter> filters = translator.translate(filter);
+        assertEquals(1, filters.size());
+        return filters.get(0);
+    }
+
+    @Test
+    void pushDown() {
+        SmartHRFilter filter = translate(AttributeBuilder.build("emp_status", "employed"));
+
+        assertTrue(filter.isByAttribute());
+        assertTrue(filter.pushDown);
+        assertEquals(Collections.singletonMap("emp_status", "employed"), filter.toQueryParams());
+    }
+
+    @Test
+    void evaluateInConnector() {
+        SmartHRFilter filter = translate(AttributeBuilder.build("last_name", "Yamada"));
+
+        assertTrue(filter.isByAttribute());
+        assertFalse(filter.pushDown);
+        assertTrue(filter.toQueryParams().isEmpty());
+
+        List<ConnectorObject> results = new ArrayList<>();
+        SmartHRFilteredResultsHandler handler = new SmartHRFilteredResultsHandler(filter, results::add,
+                Collections.singleton(Name.NAME), 1, 2);
+
+        assertTrue(handler.handle(crew("1", "Yamada")));
+        assertTrue(handler.handle(crew("2", "Suzuki")));
+        assertTrue(handler.handle(crew("3", "Yamada")));
+        assertTrue(handler.handle(crew("4", "Yamada")));
+
+        assertEquals(3, handler.getMatchedCount());
+        assertEquals(1, results.size());
+        assertEquals("3", results.get(0).getUid().getUidValue());
+        // Not requested
+        assertNull(results.get(0).getAttributeByName("last_name"));
+    }
+
+    @Test
+    void matchCaseIgnore() {
+        SmartHRFilter email = translate(AttributeBuilder.build("email", "Foo@Example.com"));
+        SmartHRFilter lastName = translate(AttributeBuilder.build("last_name", "YAMADA"));
+
+        ConnectorObject crew = new ConnectorObjectBuilder()
+                .setObjectClass(SmartHRCrewHandler.CREW_OBJECT_CLASS)
+                .setUid("1")
+                .setName("1")
+                .addAttribute("email", "foo@example.com")
+                .addAttribute("last_name", "Yamada")
+                .build();
+
+        // email is STRING_CASE_IGNORE subtype
+        assertTrue(email.matches(crew));
+        assertFalse(lastName.matches(crew));
+    }
+
+    @Test
+    void orOfNames() {
+        SmartHRFilter filter = translate(FilterBuilder.or(
+                FilterBuilder.equalTo(new Name("001")),
+                FilterBuilder.or(
+                        FilterBuilder.equalTo(new Name("002")),
+                        FilterBuilder.equalTo(new Uid("3")))));
+
+        assertTrue(filter.isComposite());
+        assertEquals(3, filter.children.size());
+
+        List<SmartHRFilter> lookups = SmartHRQueryPlanner.findPointLookups(filter);
+        assertNotNull(lookups);
+        assertEquals(3, lookups.size());
+
+        assertTrue(filter.matches(crew("3", "Yamada")));
+        assertFalse(filter.matches(crew("4", "Yamada")));
+    }
+
+    @Test
+    void andWithResidual() {
+        SmartHRFilter filter = translate(FilterBuilder.and(
+                FilterBuilder.equalTo(AttributeBuilder.build("last_name", "Yamada")),
+                FilterBuilder.or(
+                        FilterBuilder.equalTo(new Name("1")),
+                        FilterBuilder.equalTo(new Name("2")))));
+
+        // Driven by the point lookups, last_name is evaluated in the connector
+        List<SmartHRFilter> lookups = SmartHRQueryPlanner.findPointLookups(filter);
+        assertNotNull(lookups);
+        assertEquals(2, lookups.size());
+        assertEquals(Collections.singleton("last_name"), filter.getAttributeNames());
+
+        assertTrue(filter.matches(crew("1", "Yamada")));
+        assertFalse(filter.matches(crew("2", "Suzuki")));
+
+        // Can't be answered remotely
+        SmartHRFilter scan = translate(FilterBuilder.or(
+                FilterBuilder.equalTo(AttributeBuilder.build("last_name", "Yamada")),
+                FilterBuilder.equalTo(new Name("1"))));
+        assertNull(SmartHRQueryPlanner.findPointLookups(scan));
+        assertNull(SmartHRQueryPlanner.findPushDown(scan));
+    }
+
+    private ConnectorObject crew(String id, String lastName) {
+        return new ConnectorObjectBuilder()
+                .setObjectClass(SmartHRCrewHandler.CREW_OBJECT_CLASS)
+                .setUid(id)
+                .setName(id)
+                .addAttribute("last_name", lastName)
+                .build();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.AttributeUtil;
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmartHRHashStoreTest {
+
+    private static ConnectorObject newObject(String uid, String email) {
+        return new ConnectorObjectBuilder()
+                .setUid(uid)
+                .setName(uid)
+                .addAttribute("email", email)
+                .build();
+    }
+
+    private static List<String> scan(SmartHRHashStore store, List<ConnectorObject> objects, int stopAt) {
+        List<String> results = new ArrayList<>();
+        SmartHRHashStore.Scan scan = store.startScan(o -> {
+            results.add(o.getUid().getUidValue());
+            return results.size() < stopAt;
+        }, false);
+        for (ConnectorObject o : objects) {
+            if (!scan.handle(o)) {
+                break;
+            }
+        }
+        scan.complete();
+        return results;
+    }
+
+    @Test
+    void suppressUnchanged(@TempDir Path dir) {
+        List<ConnectorObject> objects = new ArrayList<>();
+        objects.add(newObject("1", "a@example.com"));
+        objects.add(newObject("2", "b@example.com"));
+
+        Path file = dir.resolve("test.hash");
+        assertEquals(2, scan(new SmartHRHashStore(file), objects, Integer.MAX_VALUE).size());
+
+        // Loaded from the file
+        objects.set(1, newObject("2", "changed@example.com"));
+        objects.add(newObject("3", "c@example.com"));
+        SmartHRHashStore store = new SmartHRHashStore(file);
+
+        // Interrupted scan doesn't update the hashes
+        assertEquals(1, scan(store, objects, 1).size());
+
+        List<String> results = scan(store, objects, Integer.MAX_VALUE);
+        assertEquals(2, results.size());
+        assertEquals("2", results.get(0));
+        assertEquals("3", results.get(1));
+
+        assertEquals(0, scan(store, objects, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void flagUnchanged() {
+        List<ConnectorObject> objects = new ArrayList<>();
+        objects.add(newObject("1", "a@example.com"));
+        objects.add(newObject("2", "b@example.com"));
+
+        SmartHRHashStore store = new SmartHRHashStore(null);
+        assertEquals(2, scan(store, objects, Integer.MAX_VALUE).size());
+
+        objects.set(1, newObject("2", "changed@example.com"));
+
+        // All objects are returned for reconciliation
+        List<ConnectorObject> results = new ArrayList<>();
+        SmartHRHashStore.Scan scan = store.startScan(results::add, true);
+        objects.forEach(scan::handle);
+        scan.complete();
+
+        assertEquals(2, results.size());
+        assertEquals(Boolean.TRUE, AttributeUtil.getBooleanValue(results.get(0).getAttributeByName(SmartHRHashStore.UNCHANGED_ATTR)));
+        assertEquals(Boolean.FALSE, AttributeUtil.getBooleanValue(results.get(1).getAttributeByName(SmartHRHashStore.UNCHANGED_ATTR)));
+        assertEquals("changed@example.com", AttributeUtil.getStringValue(results.get(1).getAttributeByName("email")));
+
+        // The flag isn't a part of the hash
+        assertEquals(0, scan(store, objects, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void notSavePartialScan() {
+        List<ConnectorObject> objects = new ArrayList<>();
+        objects.add(newObject("1", "a@example.com"));
+        objects.add(newObject("2", "b@example.com"));
+
+        SmartHRHashStore store = new SmartHRHashStore(null);
+        assertEquals(2, scan(store, objects, Integer.MAX_VALUE).size());
+
+        // Resumed from a checkpoint, so only the rest of the objects are scanned
+        SmartHRHashStore.Scan scan = store.startScan(o -> true, false);
+        scan.handle(objects.get(1));
+        scan.markPartial();
+        scan.complete();
+
+        // The hash of the first object is kept
+        assertEquals(0, scan(store, objects, Integer.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.rest.SmartHRPageSizeController;
+import org.junit.jupiter.api.Test;
+
+import static jp.openstandia.connector.smarthr.SmartHRCrewHandler.CREW_OBJECT_CLASS;
+import static jp.openstandia.connector.smarthr.SmartHRJobTitleHandler.JOB_TITLE_OBJECT_CLASS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRPageSizeControllerTest {
+
+    @Test
+    void growForFastResponses() {
+        // Target latency is 2500ms
+        SmartHRPageSizeController controller = SmartHRPageSizeController.getInstance("https://grow.example.com/",
+                JOB_TITLE_OBJECT_CLASS, 50, 10000);
+        assertEquals(50, controller.getPageSize());
+
+        // Not aligned to the new page size yet
+        assertEquals(50, controller.next(50, 50, 100, 50 * 200, 50));
+        assertEquals(100, controller.next(50, 100, 100, 50 * 200, 50));
+        // Already max
+        assertEquals(100, controller.next(100, 200, 100, 100 * 200, 100));
+
+        // Kept for the next scan
+        assertEquals(100, SmartHRPageSizeController.getInstance("https://grow.example.com/",
+                JOB_TITLE_OBJECT_CLASS, 50, 10000).getPageSize());
+    }
+
+    @Test
+    void shrinkForSlowOrHeavyResponses() {
+        SmartHRPageSizeController controller = SmartHRPageSizeController.getInstance("https://shrink.example.com/",
+                CREW_OBJECT_CLASS, 100, 10000);
+
+        // Slow
+        assertEquals(50, controller.next(100, 100, 3000, 100 * 1000, 100));
+        // Heavy (30KB/object)
+        assertEquals(25, controller.next(50, 150, 100, 50 * 30 * 1024, 50));
+        // Can't halve an odd page size
+        assertEquals(25, controller.next(25, 175, 3000, 25 * 1000, 25));
+    }
+}
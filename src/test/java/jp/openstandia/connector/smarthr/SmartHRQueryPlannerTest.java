@@ -0,0 +1,141 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.testutil.AbstractTest;
+import org.identityconnectors.framework.common.objects.*;
+import org.identityconnectors.framework.common.objects.filter.Filter;
+import org.identityconnectors.framework.common.objects.filter.FilterBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static jp.openstandia.connector.smarthr.SmartHRCrewHandler.CREW_OBJECT_CLASS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRQueryPlannerTest extends AbstractTest {
+
+    private static SmartHRClient.Crew newCrew(int i, String lastName, String empStatus) {
+        SmartHRClient.Crew crew = new SmartHRClient.Crew();
+        crew.id = String.valueOf(i);
+        crew.emp_code = String.format("%03d", i);
+        crew.last_name = lastName;
+        crew.emp_status = empStatus;
+        return crew;
+    }
+
+    private static List<String> uids(List<ConnectorObject> results) {
+        return results.stream().map(o -> o.getUid().getUidValue()).collect(Collectors.toList());
+    }
+
+    private List<ConnectorObject> search(Filter filter, OperationOptions options, List<SearchResult> searchResults) {
+        List<ConnectorObject> results = new ArrayList<>();
+        SearchResult searchResult = connector.search(CREW_OBJECT_CLASS, filter, results::add, options);
+        searchResults.add(searchResult);
+        return results;
+    }
+
+    @BeforeEach
+    void setUp() {
+        mockClient.crews.add(newCrew(1, "Yamada", "employed"));
+        mockClient.crews.add(newCrew(2, "Suzuki", "employed"));
+        mockClient.crews.add(newCrew(3, "Yamada", "absent"));
+        mockClient.crews.add(newCrew(4, "Yamada", "employed"));
+        mockClient.crews.add(newCrew(5, "Suzuki", "absent"));
+        mockClient.crews.add(newCrew(6, "Yamada", "employed"));
+    }
+
+    @Test
+    void andDrivenBySmallestLookups() {
+        Filter filter = FilterBuilder.and(
+                FilterBuilder.or(
+                        FilterBuilder.or(
+                                FilterBuilder.equalTo(new Uid("1")),
+                                FilterBuilder.equalTo(new Uid("2"))),
+                        FilterBuilder.equalTo(new Uid("4"))),
+                FilterBuilder.equalTo(new Name("002")));
+
+        List<ConnectorObject> results = search(filter, new OperationOptionsBuilder().build(), new ArrayList<>());
+
+        assertEquals(Collections.singletonList("2"), uids(results));
+        // The Name lookup drives the search, the Uid lookups are evaluated as the residual
+        assertEquals(Collections.singletonList("getCrew(Name)"), mockClient.calls);
+    }
+
+    @Test
+    void orDeduplicatedByUid() {
+        Filter filter = FilterBuilder.or(
+                FilterBuilder.or(
+                        FilterBuilder.equalTo(new Uid("3")),
+                        FilterBuilder.equalTo(new Name("003"))),
+                FilterBuilder.or(
+                        FilterBuilder.equalTo(new Uid("1")),
+                        FilterBuilder.equalTo(new Uid("3"))));
+
+        List<ConnectorObject> results = search(filter, new OperationOptionsBuilder().build(), new ArrayList<>());
+
+        // In the order of the branches without the duplicates
+        assertEquals(Arrays.asList("3", "1"), uids(results));
+        assertEquals(4, mockClient.calls.size());
+        assertFalse(mockClient.calls.contains("getCrews"));
+    }
+
+    @Test
+    void residualWithPaging() {
+        Filter filter = FilterBuilder.and(
+                FilterBuilder.equalTo(AttributeBuilder.build("emp_status", "employed")),
+                FilterBuilder.equalTo(AttributeBuilder.build("last_name", "Yamada")));
+        List<SearchResult> searchResults = new ArrayList<>();
+
+        List<ConnectorObject> results = search(filter, new OperationOptionsBuilder()
+                .setPageSize(1)
+                .setPagedResultsOffset(2)
+                .build(), searchResults);
+
+        // Matched: 1, 4, 6
+        assertEquals(Collections.singletonList("4"), uids(results));
+        assertEquals(1, searchResults.get(0).getRemainingPagedResults());
+        // emp_status is pushed down, and all the pages are read to count the matched objects
+        assertEquals(Collections.singletonList("getCrews"), mockClient.calls);
+        assertTrue(mockClient.fetchFields.get(0).contains("last_name"));
+    }
+
+    @Test
+    void residualOfFullScan() {
+        Filter filter = FilterBuilder.or(
+                FilterBuilder.equalTo(AttributeBuilder.build("last_name", "Suzuki")),
+                FilterBuilder.equalTo(AttributeBuilder.build("emp_status", "absent")));
+        List<SearchResult> searchResults = new ArrayList<>();
+
+        List<ConnectorObject> results = search(filter, new OperationOptionsBuilder()
+                .setAttributesToGet(Name.NAME)
+                .setPageSize(2)
+                .setPagedResultsOffset(1)
+                .build(), searchResults);
+
+        // Matched: 2, 3, 5
+        assertEquals(Arrays.asList("2", "3"), uids(results));
+        assertEquals(1, searchResults.get(0).getRemainingPagedResults());
+        // The attributes only for the filter aren't returned
+        assertNull(results.get(0).getAttributeByName("last_name"));
+        assertNull(results.get(0).getAttributeByName("emp_status"));
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.rest.SmartHRRESTClient;
+import jp.openstandia.connector.smarthr.testutil.MockSmartHR;
+import org.identityconnectors.framework.common.objects.Name;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRRESTClientTest {
+
+    private static SmartHRConfiguration newConfiguration(String endpoint) {
+        SmartHRConfiguration configuration = new SmartHRConfiguration();
+        configuration.setEndpointURL(endpoint);
+        configuration.setDefaultQueryPageSize(2);
+        return configuration;
+    }
+
+    private static void awaitCanceled(MockSmartHR mock, int page) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!mock.canceledPages.contains(page) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(mock.canceledPages.contains(page), "page " + page + " isn't canceled");
+    }
+
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ids.add(MockSmartHR.id(i));
+        }
+        return ids;
+    }
+
+    @Test
+    void prefetchInPageOrder() {
+        SmartHRConfiguration configuration = newConfiguration("https://prefetch.example.com/");
+        configuration.setPrefetchPageCount(2);
+        // The later pages arrive first
+        MockSmartHR mock = new MockSmartHR(9)
+                .delay(2, 300)
+                .delay(3, 100);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        List<Integer> maxRequestedPages = new ArrayList<>();
+        int total = client.getCrews(crew -> {
+            results.add(crew.id);
+            maxRequestedPages.add(mock.maxRequestedPage());
+            return true;
+        }, null, null, 2, 0);
+
+        assertEquals(9, total);
+        assertEquals(ids(1, 9), results);
+        assertEquals(5, mock.requestedPages.size());
+        // At most "prefetchPageCount" pages are requested ahead of the page being handled
+        for (int i = 0; i < results.size(); i++) {
+            int page = i / 2 + 1;
+            assertTrue(maxRequestedPages.get(i) <= page + 2, "page " + page + ": " + maxRequestedPages.get(i));
+        }
+    }
+
+    @Test
+    void stopInTheMiddleOfPage() {
+        SmartHRConfiguration configuration = newConfiguration("https://decode.example.com/");
+        MockSmartHR mock = new MockSmartHR(9);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<SmartHRClient.Crew> results = new ArrayList<>();
+        int total = client.getCrews(crew -> {
+            results.add(crew);
+            return results.size() < 5;
+        }, null, null, 3, 0);
+
+        assertEquals(9, total);
+        assertEquals(5, results.size());
+        assertEquals("E0005", results.get(4).emp_code);
+        // Nested objects are decoded, and unknown fields are ignored
+        assertEquals("dept", results.get(4).departments.get(0).id);
+        // The rest of the page 2 isn't passed, and the page 3 isn't requested
+        assertEquals(Arrays.asList(1, 2), mock.requestedPages);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            // offset, first id, last id, requested pages
+            "1, 1, 3, 1",
+            "4, 4, 6, 2",
+            "10, 10, 10, 4",
+            "2, 2, 4, 1;2",
+            "6, 6, 8, 2;3",
+            // Fewer objects than the page size at the end
+            "9, 9, 10, 3;4",
+    })
+    void pagedOffset(int offset, int first, int last, String pages) {
+        SmartHRConfiguration configuration = newConfiguration("https://paged-offset.example.com/");
+        MockSmartHR mock = new MockSmartHR(10);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        int total = client.getCrews(crew -> results.add(crew.id), null, null, 3, offset);
+
+        assertEquals(10, total);
+        // ConnId offset is 1-based, and the results are trimmed to the page size
+        assertEquals(ids(first, last), results);
+        List<Integer> requestedPages = new ArrayList<>(mock.requestedPages);
+        Collections.sort(requestedPages);
+        assertEquals(Arrays.stream(pages.split(";")).map(Integer::valueOf).collect(Collectors.toList()), requestedPages);
+    }
+
+    @Test
+    void cancelPrefetchedPages() throws InterruptedException {
+        SmartHRConfiguration configuration = newConfiguration("https://cancel-prefetch.example.com/");
+        configuration.setPrefetchPageCount(2);
+        MockSmartHR mock = new MockSmartHR(9).block(3);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        int total = client.getCrews(crew -> {
+            results.add(crew.id);
+            return false;
+        }, null, null, 2, 0);
+
+        assertEquals(9, total);
+        assertEquals(ids(1, 1), results);
+        awaitCanceled(mock, 3);
+        assertEquals(3, mock.maxRequestedPage());
+    }
+
+    @Test
+    void cancelSecondPageOfPagedOffset() throws InterruptedException {
+        SmartHRConfiguration configuration = newConfiguration("https://cancel-offset.example.com/");
+        MockSmartHR mock = new MockSmartHR(10).block(2);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        client.getCrews(crew -> {
+            results.add(crew.id);
+            return false;
+        }, null, null, 3, 2);
+
+        assertEquals(ids(2, 2), results);
+        awaitCanceled(mock, 2);
+    }
+
+    @Test
+    void stopNameLookupAtMatch() {
+        SmartHRConfiguration configuration = newConfiguration("https://name-lookup.example.com/");
+        // The reference cache is disabled by default
+        assertEquals(0, configuration.getReferenceCacheTTLInSeconds());
+        MockSmartHR mock = new MockSmartHR(9);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        SmartHRClient.EmploymentType found = client.getEmploymentType(new Name("name2"), null, null);
+
+        assertEquals(MockSmartHR.id(2), found.id);
+        assertEquals(Arrays.asList(1), mock.requestedPages);
+    }
+
+    @Test
+    void countByFirstPageOfOne() {
+        SmartHRConfiguration configuration = newConfiguration("https://count.example.com/");
+        MockSmartHR mock = new MockSmartHR(9);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        int total = client.getCrews(crew -> {
+            results.add(crew.id);
+            return false;
+        }, null, null, 1, 1);
+
+        // The total is from x-total-count of the first page with one object
+        assertEquals(9, total);
+        assertEquals(Arrays.asList(1), mock.requestedPages);
+        assertEquals(Arrays.asList(1), mock.requestedPageSizes);
+    }
+
+    @Test
+    void clampPageSizeOfPartitions() {
+        SmartHRConfiguration configuration = newConfiguration("https://partition-clamp.example.com/");
+        MockSmartHR mock = new MockSmartHR(250);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            int total = client.getCrews(crew -> results.add(crew.id), null, null, null, null, 150, 0,
+                    new SmartHRFullScan(null, i, 2, 0));
+            assertEquals(250, total);
+        }
+
+        // The page ranges are calculated by the page size capped by SmartHR, so the partitions don't overlap
+        assertEquals(ids(1, 250), results);
+        assertTrue(mock.requestedPageSizes.stream().allMatch(size -> size == 100), mock.requestedPageSizes.toString());
+    }
+
+    @Test
+    void readLastPartitionToTheEnd() {
+        SmartHRConfiguration configuration = newConfiguration("https://partition-last.example.com/");
+        MockSmartHR mock = new MockSmartHR(8);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        int total = client.getCrews(crew -> {
+            // The objects are added after the total count is read
+            mock.setTotal(11);
+            return results.add(crew.id);
+        }, null, null, null, null, 2, 0, new SmartHRFullScan(null, 1, 2, 0));
+
+        assertEquals(8, total);
+        // Pages 3-4 by the total count, and the added pages 5-6
+        assertEquals(ids(5, 11), results);
+    }
+
+    @Test
+    void adaptPageSizeToResponseBytes() {
+        SmartHRConfiguration configuration = newConfiguration("https://adaptive-bytes.example.com/");
+        configuration.setAdaptivePageSize(true);
+        // 30KB per object, so a page of 100 objects is over the 1MB limit
+        MockSmartHR mock = new MockSmartHR(300).padding(30 * 1024);
+        SmartHRRESTClient client = new SmartHRRESTClient("test", configuration, mock.newHttpClient());
+
+        List<String> results = new ArrayList<>();
+        int total = client.getCrews(crew -> results.add(crew.id), null, null, 100, 0);
+
+        assertEquals(300, total);
+        assertEquals(ids(1, 300), results);
+        // The page size is shrunk by the bytes of the responses, not by the latency
+        assertEquals(100, mock.requestedPageSizes.get(0));
+        assertEquals(50, mock.requestedPageSizes.get(1));
+        assertEquals(25, mock.requestedPageSizes.get(2));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.rest.SmartHRRateLimitInterceptor;
+import jp.openstandia.connector.smarthr.rest.SmartHRRateLimiter;
+import jp.openstandia.connector.smarthr.testutil.MockChain;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRRateLimiterTest {
+
+    private static SmartHRRateLimiter newLimiter(String endpoint, int permitsPerSecond) {
+        SmartHRConfiguration configuration = new SmartHRConfiguration();
+        configuration.setEndpointURL(endpoint);
+        configuration.setRateLimitPerSecond(permitsPerSecond);
+        return SmartHRRateLimiter.getInstance(configuration);
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void tokenBucket() throws InterruptedException {
+        SmartHRRateLimiter limiter = newLimiter("https://bucket.example.com/", 10);
+
+        // The bucket is full at first
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+        }
+        assertTrue(elapsedMillis(start) < 80);
+
+        // The next permit is reserved 100ms later
+        start = System.nanoTime();
+        limiter.acquire();
+        assertTrue(elapsedMillis(start) >= 80);
+    }
+
+    @Test
+    void sharedPerEndpointAndRate() {
+        SmartHRRateLimiter limiter = newLimiter("https://shared.example.com/", 5);
+
+        assertSame(limiter, newLimiter("https://shared.example.com/", 5));
+        assertNotSame(limiter, newLimiter("https://shared.example.com/", 10));
+        // Another rate doesn't replace the existing limiter
+        assertSame(limiter, newLimiter("https://shared.example.com/", 5));
+        assertNotSame(limiter, newLimiter("https://other.example.com/", 5));
+    }
+
+    @Test
+    void retryAfter() throws Exception {
+        SmartHRRateLimitInterceptor interceptor = new SmartHRRateLimitInterceptor(
+                newLimiter("https://retry-after.example.com/", 0), 10);
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenRespond(429, "Retry-After", "1")
+                .thenRespond(200);
+
+        long start = System.nanoTime();
+        try (Response response = interceptor.intercept(chain)) {
+            assertEquals(200, response.code());
+        }
+        assertEquals(2, chain.attempts());
+        assertTrue(elapsedMillis(start) >= 900);
+    }
+
+    @Test
+    void giveUpRetryAfterOverMaxWait() throws Exception {
+        SmartHRRateLimitInterceptor interceptor = new SmartHRRateLimitInterceptor(
+                newLimiter("https://give-up.example.com/", 0), 1);
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenRespond(429, "Retry-After", "60");
+
+        try (Response response = interceptor.intercept(chain)) {
+            assertEquals(429, response.code());
+        }
+        assertEquals(1, chain.attempts());
+    }
+
+    @Test
+    void blockUntilRateLimitReset() throws Exception {
+        SmartHRRateLimiter limiter = newLimiter("https://reset.example.com/", 0);
+        SmartHRRateLimitInterceptor interceptor = new SmartHRRateLimitInterceptor(limiter, 1);
+
+        long resetAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 30;
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenRespond(200, "x-rate-limit-remaining", "0", "x-rate-limit-reset", String.valueOf(resetAt));
+        try (Response response = interceptor.intercept(chain)) {
+            assertEquals(200, response.code());
+        }
+
+        // Blocked until the reset time, but no longer than max wait
+        long start = System.nanoTime();
+        limiter.acquire();
+        long elapsed = elapsedMillis(start);
+        assertTrue(elapsed >= 800, "elapsed: " + elapsed);
+        assertTrue(elapsed < 5000, "elapsed: " + elapsed);
+    }
+
+    @Test
+    void skipAcquiredPermit() throws Exception {
+        SmartHRRateLimiter limiter = newLimiter("https://acquired.example.com/", 1);
+        SmartHRRateLimitInterceptor interceptor = new SmartHRRateLimitInterceptor(limiter, 10);
+
+        // Acquired by the caller before enqueue
+        limiter.acquire();
+        Request request = MockChain.request("GET").newBuilder()
+                .tag(SmartHRRateLimiter.PermitAcquired.class, SmartHRRateLimiter.PermitAcquired.INSTANCE)
+                .build();
+        MockChain chain = new MockChain(request).thenRespond(200);
+
+        long start = System.nanoTime();
+        interceptor.intercept(chain).close();
+        assertTrue(elapsedMillis(start) < 500);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.rest.SmartHRReferenceCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static jp.openstandia.connector.smarthr.SmartHRJobTitleHandler.JOB_TITLE_OBJECT_CLASS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRReferenceCacheTest {
+
+    private static SmartHRClient.JobTitle newJobTitle(String id, String name) {
+        SmartHRClient.JobTitle jobTitle = new SmartHRClient.JobTitle();
+        jobTitle.id = id;
+        jobTitle.name = name;
+        return jobTitle;
+    }
+
+    @Test
+    void lookupAndInvalidate() {
+        String endpoint = "https://cache-test.example.com/";
+        SmartHRReferenceCache<SmartHRClient.JobTitle> cache = SmartHRReferenceCache.getInstance(endpoint,
+                JOB_TITLE_OBJECT_CLASS, j -> j.id, j -> j.name);
+
+        AtomicInteger loaded = new AtomicInteger();
+        Supplier<List<SmartHRClient.JobTitle>> loader = () -> {
+            loaded.incrementAndGet();
+            List<SmartHRClient.JobTitle> all = new ArrayList<>();
+            all.add(newJobTitle("ABC", "manager"));
+            all.add(newJobTitle("def", "staff"));
+            return all;
+        };
+
+        // Uid is case-insensitive
+        assertEquals("manager", cache.getByUid("abc", 60000, loader).name);
+        assertEquals("staff", cache.getByName("staff", 60000, loader).name);
+        assertNull(cache.getByName("Staff", 60000, loader));
+        assertEquals(1, loaded.get());
+
+        SmartHRReferenceCache.invalidateAll(endpoint);
+
+        assertEquals("def", cache.getByUid("DEF", 60000, loader).id);
+        assertEquals(2, loaded.get());
+
+        // Expired
+        assertEquals("def", cache.getByUid("DEF", 0, loader).id);
+        assertEquals(3, loaded.get());
+    }
+
+    @Test
+    void reloadOnMiss() {
+        SmartHRReferenceCache<SmartHRClient.JobTitle> cache = SmartHRReferenceCache.getInstance("https://miss-test.example.com/",
+                JOB_TITLE_OBJECT_CLASS, j -> j.id, j -> j.name);
+
+        List<SmartHRClient.JobTitle> all = new ArrayList<>();
+        all.add(newJobTitle("abc", "manager"));
+        AtomicInteger loaded = new AtomicInteger();
+        Supplier<List<SmartHRClient.JobTitle>> loader = () -> {
+            loaded.incrementAndGet();
+            return new ArrayList<>(all);
+        };
+
+        assertEquals("manager", cache.getByUid("abc", 60000, 60000, loader).name);
+        assertEquals(1, loaded.get());
+
+        // Created by another node
+        all.add(newJobTitle("def", "staff"));
+
+        // Don't reload if the snapshot is fresh
+        assertNull(cache.getByName("staff", 60000, 60000, loader));
+        assertEquals(1, loaded.get());
+
+        assertEquals("def", cache.getByName("staff", 60000, 0, loader).id);
+        assertEquals(2, loaded.get());
+        // Stored for the next lookup
+        assertEquals("staff", cache.getByUid("def", 60000, 60000, loader).name);
+        assertEquals(2, loaded.get());
+    }
+}
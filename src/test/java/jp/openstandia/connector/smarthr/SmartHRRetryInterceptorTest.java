@@ -0,0 +1,160 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import jp.openstandia.connector.smarthr.rest.SmartHRRateLimiter;
+import jp.openstandia.connector.smarthr.rest.SmartHRRetryInterceptor;
+import jp.openstandia.connector.smarthr.testutil.MockChain;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRRetryInterceptorTest {
+
+    private final SmartHRRetryInterceptor interceptor = new SmartHRRetryInterceptor(3, 1, 10, 0);
+
+    private int intercept(MockChain chain) throws IOException {
+        try (Response response = interceptor.intercept(chain)) {
+            return response.code();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"GET", "PUT"})
+    void retryServerErrorForIdempotent(String method) throws IOException {
+        MockChain chain = new MockChain(MockChain.request(method))
+                .thenRespond(503)
+                .thenRespond(500)
+                .thenRespond(200);
+
+        assertEquals(200, intercept(chain));
+        assertEquals(3, chain.attempts());
+    }
+
+    @Test
+    void acquirePermitAgainForRetry() throws IOException {
+        Request request = MockChain.request("GET").newBuilder()
+                .tag(SmartHRRateLimiter.PermitAcquired.class, SmartHRRateLimiter.PermitAcquired.INSTANCE)
+                .build();
+        MockChain chain = new MockChain(request)
+                .thenThrow(new SocketTimeoutException())
+                .thenRespond(503)
+                .thenRespond(200);
+
+        assertEquals(200, intercept(chain));
+        assertEquals(3, chain.attempts());
+        // Only the first attempt uses the permit acquired by the caller thread
+        assertNotNull(chain.proceeded.get(0).tag(SmartHRRateLimiter.PermitAcquired.class));
+        assertNull(chain.proceeded.get(1).tag(SmartHRRateLimiter.PermitAcquired.class));
+        assertNull(chain.proceeded.get(2).tag(SmartHRRateLimiter.PermitAcquired.class));
+    }
+
+    @Test
+    void giveUpAfterMaxAttempts() throws IOException {
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenRespond(503)
+                .thenRespond(503)
+                .thenRespond(503)
+                .thenRespond(200);
+
+        assertEquals(503, intercept(chain));
+        assertEquals(3, chain.attempts());
+    }
+
+    @Test
+    void notRetryNotImplemented() throws IOException {
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenRespond(501)
+                .thenRespond(200);
+
+        assertEquals(501, intercept(chain));
+        assertEquals(1, chain.attempts());
+    }
+
+    @Test
+    void notRetryClientError() throws IOException {
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenRespond(404)
+                .thenRespond(200);
+
+        assertEquals(404, intercept(chain));
+        assertEquals(1, chain.attempts());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"POST", "PATCH", "DELETE"})
+    void notRetryServerErrorForNonIdempotent(String method) throws IOException {
+        MockChain chain = new MockChain(MockChain.request(method))
+                .thenRespond(503)
+                .thenRespond(201);
+
+        assertEquals(503, intercept(chain));
+        assertEquals(1, chain.attempts());
+    }
+
+    @Test
+    void retryTimeoutForIdempotent() throws IOException {
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenThrow(new SocketTimeoutException("read timed out"))
+                .thenRespond(200);
+
+        assertEquals(200, intercept(chain));
+        assertEquals(2, chain.attempts());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"POST", "PATCH", "DELETE"})
+    void notRetryTimeoutForNonIdempotent(String method) {
+        // The request might have been processed by SmartHR
+        MockChain chain = new MockChain(MockChain.request(method))
+                .thenThrow(new SocketTimeoutException("read timed out"))
+                .thenRespond(201);
+
+        assertThrows(SocketTimeoutException.class, () -> intercept(chain));
+        assertEquals(1, chain.attempts());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"GET", "POST", "PATCH", "DELETE"})
+    void retryConnectFailure(String method) throws IOException {
+        // The request wasn't sent
+        MockChain chain = new MockChain(MockChain.request(method))
+                .thenThrow(new ConnectException("connection refused"))
+                .thenRespond(200);
+
+        assertEquals(200, intercept(chain));
+        assertEquals(2, chain.attempts());
+    }
+
+    @Test
+    void rethrowLastFailure() {
+        MockChain chain = new MockChain(MockChain.request("GET"))
+                .thenThrow(new ConnectException("connection refused"))
+                .thenThrow(new ConnectException("connection refused"))
+                .thenThrow(new ConnectException("connection refused"));
+
+        assertThrows(ConnectException.class, () -> intercept(chain));
+        assertEquals(3, chain.attempts());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.ConnectorObject;
+import org.identityconnectors.framework.common.objects.ConnectorObjectBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmartHRSearchPipelineTest {
+
+    private static ConnectorObject newObject(int i) {
+        return new ConnectorObjectBuilder()
+                .setUid(String.valueOf(i))
+                .setName(String.valueOf(i))
+                .build();
+    }
+
+    @Test
+    void keepOrder() {
+        List<String> results = new ArrayList<>();
+
+        int total = new SmartHRSearchPipeline(2).execute(o -> {
+            results.add(o.getUid().getUidValue());
+            return true;
+        }, handler -> {
+            for (int i = 0; i < 10; i++) {
+                handler.handle(newObject(i));
+            }
+            return 10;
+        });
+
+        assertEquals(10, total);
+        assertEquals(10, results.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), results.get(i));
+        }
+    }
+
+    @Test
+    void cancel() {
+        List<String> results = new ArrayList<>();
+        List<Boolean> producerResults = new ArrayList<>();
+
+        new SmartHRSearchPipeline(1).execute(o -> {
+            results.add(o.getUid().getUidValue());
+            return results.size() < 3;
+        }, handler -> {
+            for (int i = 0; i < 100; i++) {
+                boolean next = handler.handle(newObject(i));
+                producerResults.add(next);
+                if (!next) {
+                    break;
+                }
+            }
+            return 100;
+        });
+
+        assertEquals(3, results.size());
+        // The producer is notified of the cancellation
+        assertEquals(false, producerResults.get(producerResults.size() - 1));
+    }
+
+    @Test
+    void threeStages() {
+        List<String> results = new ArrayList<>();
+        Set<Thread> fetchThreads = new HashSet<>();
+        Set<Thread> decodeThreads = new HashSet<>();
+
+        // deliver <- decode/map <- fetch
+        int total = new SmartHRSearchPipeline(2).execute(o -> {
+            results.add(o.getUid().getUidValue());
+            return true;
+        }, handler -> new SmartHRSearchPipeline(1).<int[]>run(page -> {
+            decodeThreads.add(Thread.currentThread());
+            for (int i : page) {
+                if (!handler.handle(newObject(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }, pages -> {
+            fetchThreads.add(Thread.currentThread());
+            for (int i = 0; i < 5; i++) {
+                if (!pages.test(new int[]{i * 2, i * 2 + 1})) {
+                    break;
+                }
+            }
+            return 10;
+        }));
+
+        assertEquals(10, total);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), results.get(i));
+        }
+        // Each stage runs in its own thread
+        assertEquals(1, fetchThreads.size());
+        assertEquals(1, decodeThreads.size());
+        assertNotEquals(fetchThreads, decodeThreads);
+        assertFalse(fetchThreads.contains(Thread.currentThread()));
+        assertFalse(decodeThreads.contains(Thread.currentThread()));
+    }
+}
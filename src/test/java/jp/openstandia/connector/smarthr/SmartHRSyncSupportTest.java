@@ -0,0 +1,163 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr;
+
+import org.identityconnectors.framework.common.objects.SyncDelta;
+import org.identityconnectors.framework.common.objects.SyncResultsHandler;
+import org.identityconnectors.framework.common.objects.SyncToken;
+import org.identityconnectors.framework.spi.SyncTokenResultsHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SmartHRSyncSupportTest {
+
+    private static SmartHRClient.Department newDepartment(String id, String updatedAt) {
+        SmartHRClient.Department dept = new SmartHRClient.Department();
+        dept.id = id;
+        dept.name = id;
+        dept.code = id;
+        dept.updated_at = updatedAt;
+        return dept;
+    }
+
+    private static SmartHRSyncSupport<SmartHRClient.Department> newSyncSupport(List<SmartHRClient.Department> depts,
+                                                                               List<String> sorts) {
+        return newSyncSupport(depts, sorts, d -> {
+        });
+    }
+
+    private static SmartHRSyncSupport<SmartHRClient.Department> newSyncSupport(List<SmartHRClient.Department> depts,
+                                                                               List<String> sorts,
+                                                                               Consumer<SmartHRClient.Department> onHandled) {
+        return new SmartHRSyncSupport<>(SmartHRDepartmentHandler.createSchema().build(), d -> d.updated_at, "code",
+                (sort, handler) -> {
+                    sorts.add(sort);
+                    List<SmartHRClient.Department> sorted = new ArrayList<>(depts);
+                    Comparator<SmartHRClient.Department> comparator = sort.endsWith("updated_at") ?
+                            Comparator.comparing(d -> d.updated_at) : Comparator.comparing(d -> d.code);
+                    sorted.sort(sort.startsWith("-") ? comparator.reversed() : comparator);
+                    for (SmartHRClient.Department d : sorted) {
+                        if (!handler.handle(d)) {
+                            break;
+                        }
+                        onHandled.accept(d);
+                    }
+                    return sorted.size();
+                });
+    }
+
+    private static class Handler implements SyncTokenResultsHandler, SyncResultsHandler {
+        final List<SyncDelta> deltas = new ArrayList<>();
+        SyncToken token;
+
+        @Override
+        public boolean handle(SyncDelta delta) {
+            deltas.add(delta);
+            return true;
+        }
+
+        @Override
+        public void handleResult(SyncToken token) {
+            this.token = token;
+        }
+    }
+
+    @Test
+    void syncSinceToken() {
+        List<SmartHRClient.Department> depts = new ArrayList<>();
+        depts.add(newDepartment("a", "2021-04-01T09:00:00.000+09:00"));
+        depts.add(newDepartment("b", "2021-04-02T09:00:00.000+09:00"));
+        depts.add(newDepartment("c", "2021-04-03T09:00:00.000+09:00"));
+        depts.add(newDepartment("d", "2021-04-04T09:00:00.000+09:00"));
+        List<String> sorts = new ArrayList<>();
+
+        SmartHRSyncSupport<SmartHRClient.Department> sync = newSyncSupport(depts, sorts);
+
+        assertEquals("2021-04-04T09:00:00.000+09:00", sync.getLatestSyncToken().getValue());
+
+        List<SyncDelta> deltas = new ArrayList<>();
+        sync.sync(new SyncToken("2021-04-02T09:00:00.000+09:00"), deltas::add, null, false);
+
+        assertEquals("-updated_at", sorts.get(sorts.size() - 1));
+        // The object which has the same updated_at as the token is delivered again, then ascending order
+        assertEquals(3, deltas.size());
+        assertEquals("b", deltas.get(0).getUid().getUidValue());
+        assertEquals("c", deltas.get(1).getUid().getUidValue());
+        assertEquals("d", deltas.get(2).getUid().getUidValue());
+        assertEquals("2021-04-04T09:00:00.000+09:00", deltas.get(2).getToken().getValue());
+    }
+
+    @Test
+    void syncWithoutToken() {
+        List<SmartHRClient.Department> depts = new ArrayList<>();
+        depts.add(newDepartment("b", "2021-04-01T09:00:00.000+09:00"));
+        depts.add(newDepartment("a", "2021-04-02T09:00:00.000+09:00"));
+        depts.add(newDepartment("c", "2021-04-03T09:00:00.000+09:00"));
+        List<String> sorts = new ArrayList<>();
+
+        // "a" is updated while paging the first sync
+        SmartHRSyncSupport<SmartHRClient.Department> sync = newSyncSupport(depts, sorts, d -> {
+            if (d.id.equals("a")) {
+                d.updated_at = "2021-04-05T09:00:00.000+09:00";
+            }
+        });
+        Handler handler = new Handler();
+        sync.sync(null, handler, null, false);
+
+        // Delivered in the stable order, not in the order of updated_at
+        assertEquals(Arrays.asList("-updated_at", "code"), sorts);
+        assertEquals(3, handler.deltas.size());
+        assertEquals("a", handler.deltas.get(0).getUid().getUidValue());
+        assertEquals("b", handler.deltas.get(1).getUid().getUidValue());
+        assertEquals("c", handler.deltas.get(2).getUid().getUidValue());
+        // The interrupted first sync is resumed from the beginning
+        assertEquals(SmartHRSyncSupport.EPOCH_TOKEN, handler.deltas.get(0).getToken().getValue());
+        // The token is the latest updated_at when the first sync started
+        assertEquals("2021-04-03T09:00:00.000+09:00", handler.token.getValue());
+
+        // The object updated while the first sync is delivered by the next sync
+        Handler next = new Handler();
+        sync.sync(handler.token, next, null, false);
+
+        assertEquals(2, next.deltas.size());
+        assertEquals("c", next.deltas.get(0).getUid().getUidValue());
+        assertEquals("a", next.deltas.get(1).getUid().getUidValue());
+    }
+
+    @Test
+    void syncEmptyObjectClass() {
+        List<SmartHRClient.Department> depts = new ArrayList<>();
+        SmartHRSyncSupport<SmartHRClient.Department> sync = newSyncSupport(depts, new ArrayList<>());
+
+        // Not the clock of the connector host
+        SyncToken token = sync.getLatestSyncToken();
+        assertEquals(SmartHRSyncSupport.EPOCH_TOKEN, token.getValue());
+
+        depts.add(newDepartment("a", "2000-01-01T09:00:00.000+09:00"));
+        Handler handler = new Handler();
+        sync.sync(token, handler, null, false);
+
+        assertEquals(1, handler.deltas.size());
+        assertEquals("2000-01-01T09:00:00.000+09:00", handler.token.getValue());
+    }
+}
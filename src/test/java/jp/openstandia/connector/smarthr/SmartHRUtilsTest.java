@@ -15,12 +15,21 @@
  */
 package jp.openstandia.connector.smarthr;
 
+import org.identityconnectors.framework.common.exceptions.InvalidAttributeValueException;
+import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.OperationOptionsBuilder;
+import org.identityconnectors.framework.common.objects.SortKey;
+import org.identityconnectors.framework.common.objects.Uid;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class SmartHRUtilsTest {
 
@@ -35,4 +44,116 @@ class SmartHRUtilsTest {
         OperationOptions trueOption = new OperationOptionsBuilder().setAllowPartialAttributeValues(true).build();
         assertTrue(SmartHRUtils.shouldAllowPartialAttributeValues(trueOption));
     }
-}
\ No newline at end of file
+
+    @Test
+    void departmentParentFetchField() {
+        SchemaDefinition schema = SmartHRDepartmentHandler.createSchema().build();
+
+        // parent_id is read from the nested parent object
+        assertEquals("parent", schema.getFetchField("parent_id"));
+        assertEquals("parent", SmartHRUtils.createFullAttributesToGet(schema, new OperationOptionsBuilder()
+                .setAttributesToGet("parent_id")
+                .build()).get("parent_id"));
+    }
+
+    @Test
+    void toZoneDateTime() {
+        ZonedDateTime expected = ZonedDateTime.of(2021, 4, 1, 0, 0, 0, 0, ZoneId.systemDefault());
+        assertEquals(expected, SmartHRUtils.toZoneDateTime("2021-04-01"));
+        // Cached
+        assertSame(SmartHRUtils.toZoneDateTime("2021-04-01"), SmartHRUtils.toZoneDateTime("2021-04-01"));
+
+        assertEquals(ZonedDateTime.of(2020, 2, 29, 0, 0, 0, 0, ZoneId.systemDefault()), SmartHRUtils.toZoneDateTime("2020-02-29"));
+        assertThrows(DateTimeParseException.class, () -> SmartHRUtils.toZoneDateTime("2021-02-29"));
+        assertThrows(DateTimeParseException.class, () -> SmartHRUtils.toZoneDateTime("2021-4-1"));
+    }
+
+    @Test
+    void toZonedDateTimeFromISO() {
+        assertEquals(ZonedDateTime.parse("2021-04-01T09:00:00.000+09:00"),
+                SmartHRUtils.toZonedDateTimeFromISO("2021-04-01T09:00:00.000+09:00"));
+        // Not cached
+        assertNotSame(SmartHRUtils.toZonedDateTimeFromISO("2021-04-01T09:00:00.000+09:00"),
+                SmartHRUtils.toZonedDateTimeFromISO("2021-04-01T09:00:00.000+09:00"));
+    }
+
+    @Test
+    void resolveSort() {
+        SchemaDefinition schema = SmartHRCrewHandler.createSchema(Collections.emptyList()).build();
+
+        assertEquals("emp_code", SmartHRUtils.resolveSort(schema, new OperationOptionsBuilder().build(), "emp_code"));
+
+        OperationOptions options = new OperationOptionsBuilder()
+                .setSortKeys(new SortKey("updated_at", false), new SortKey(Name.NAME, true))
+                .build();
+        assertEquals("-updated_at,emp_code", SmartHRUtils.resolveSort(schema, options, "emp_code"));
+
+        OperationOptions unsupported = new OperationOptionsBuilder()
+                .setSortKeys(new SortKey("custom_fields", true))
+                .build();
+        assertThrows(InvalidAttributeValueException.class, () -> SmartHRUtils.resolveSort(schema, unsupported, "emp_code"));
+    }
+
+    @Test
+    void createFullAttributesToGet() {
+        SchemaDefinition schema = SmartHRCrewHandler.createSchema(Collections.emptyList()).build();
+
+        Map<String, String> defaults = SmartHRUtils.createFullAttributesToGet(schema, new OperationOptionsBuilder().build());
+        assertTrue(defaults.containsKey("last_name"));
+
+        // ATTRIBUTES_TO_GET without RETURN_DEFAULT_ATTRIBUTES returns only the requested attributes with Uid and Name
+        OperationOptions slim = new OperationOptionsBuilder()
+                .setAttributesToGet("last_name")
+                .build();
+        Map<String, String> attributesToGet = SmartHRUtils.createFullAttributesToGet(schema, slim);
+        assertEquals(3, attributesToGet.size());
+        assertEquals("id", attributesToGet.get(Uid.NAME));
+        assertEquals("emp_code", attributesToGet.get(Name.NAME));
+        assertEquals("last_name", attributesToGet.get("last_name"));
+
+        OperationOptions withDefaults = new OperationOptionsBuilder()
+                .setAttributesToGet("last_name")
+                .setReturnDefaultAttributes(true)
+                .build();
+        assertEquals(defaults.keySet(), SmartHRUtils.createFullAttributesToGet(schema, withDefaults).keySet());
+    }
+
+    @Test
+    void isCountOnly() {
+        assertFalse(SmartHRUtils.isCountOnly(new OperationOptionsBuilder().build()));
+        assertFalse(SmartHRUtils.isCountOnly(new OperationOptionsBuilder().setPageSize(0).build()));
+        assertFalse(SmartHRUtils.isCountOnly(new OperationOptionsBuilder().setAttributesToGet().setPageSize(10).build()));
+        assertTrue(SmartHRUtils.isCountOnly(new OperationOptionsBuilder().setAttributesToGet().setPageSize(0).build()));
+    }
+
+    @Test
+    void partition() {
+        assertFalse(SmartHRUtils.isPartitioned(new OperationOptionsBuilder().build()));
+
+        OperationOptions options = new OperationOptionsBuilder()
+                .setOption(SmartHRUtils.PARTITION_INDEX_OPTION, 3)
+                .setOption(SmartHRUtils.PARTITION_COUNT_OPTION, 4)
+                .build();
+        assertTrue(SmartHRUtils.isPartitioned(options));
+        assertEquals(3, SmartHRUtils.resolvePartitionIndex(options));
+
+        OperationOptions invalid = new OperationOptionsBuilder()
+                .setOption(SmartHRUtils.PARTITION_INDEX_OPTION, 4)
+                .setOption(SmartHRUtils.PARTITION_COUNT_OPTION, 4)
+                .build();
+        assertThrows(InvalidAttributeValueException.class, () -> SmartHRUtils.resolvePartitionIndex(invalid));
+
+        // 1001 objects = 21 pages
+        int next = 1;
+        for (int i = 0; i < 4; i++) {
+            int[] pages = SmartHRUtils.resolvePartitionPages(1001, 50, i, 4);
+            assertEquals(next, pages[0]);
+            next = pages[1] + 1;
+        }
+        assertEquals(22, next);
+
+        // More partitions than pages
+        int[] empty = SmartHRUtils.resolvePartitionPages(10, 50, 0, 4);
+        assertTrue(empty[0] > empty[1]);
+    }
+}
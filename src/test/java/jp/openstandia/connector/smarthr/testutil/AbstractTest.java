@@ -36,8 +36,12 @@ public abstract class AbstractTest {
     }
 
     protected ConnectorFacade newFacade() {
+        return newFacade(newConfiguration());
+    }
+
+    protected ConnectorFacade newFacade(SmartHRConfiguration configuration) {
         ConnectorFacadeFactory factory = ConnectorFacadeFactory.getInstance();
-        APIConfiguration impl = TestHelpers.createTestConfiguration(LocalSmartHRConnector.class, newConfiguration());
+        APIConfiguration impl = TestHelpers.createTestConfiguration(LocalSmartHRConnector.class, configuration);
         impl.getResultsHandlerConfiguration().setEnableAttributesToGetSearchResultsHandler(false);
         impl.getResultsHandlerConfiguration().setEnableNormalizingResultsHandler(false);
         impl.getResultsHandlerConfiguration().setEnableFilteredResultsHandler(false);
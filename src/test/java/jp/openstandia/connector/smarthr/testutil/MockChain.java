@@ -0,0 +1,132 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.testutil;
+
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interceptor chain which returns the queued responses or throws the queued exceptions
+ * instead of calling the next interceptor.
+ */
+public class MockChain implements Interceptor.Chain {
+
+    private final Request request;
+    private final Call call;
+    private final Deque<Object> outcomes = new ArrayDeque<>();
+
+    public final List<Request> proceeded = new ArrayList<>();
+
+    public MockChain(Request request) {
+        this.request = request;
+        this.call = new OkHttpClient().newCall(request);
+    }
+
+    public static Request request(String method) {
+        Request.Builder builder = new Request.Builder().url("https://mock.example.com/api/v1/crews");
+        if (method.equals("GET")) {
+            return builder.get().build();
+        }
+        return builder.method(method, RequestBody.create("{}", MediaType.parse("application/json"))).build();
+    }
+
+    public MockChain thenRespond(int code, String... headers) {
+        Response.Builder builder = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("mock")
+                .body(ResponseBody.create("[]", MediaType.parse("application/json")));
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            builder.addHeader(headers[i], headers[i + 1]);
+        }
+        outcomes.add(builder.build());
+        return this;
+    }
+
+    public MockChain thenThrow(IOException e) {
+        outcomes.add(e);
+        return this;
+    }
+
+    public int attempts() {
+        return proceeded.size();
+    }
+
+    @Override
+    public Request request() {
+        return request;
+    }
+
+    @Override
+    public Response proceed(Request request) throws IOException {
+        proceeded.add(request);
+        Object outcome = outcomes.poll();
+        if (outcome == null) {
+            throw new IllegalStateException("No more mock responses");
+        }
+        if (outcome instanceof IOException) {
+            throw (IOException) outcome;
+        }
+        return (Response) outcome;
+    }
+
+    @Override
+    public Connection connection() {
+        return null;
+    }
+
+    @Override
+    public Call call() {
+        return call;
+    }
+
+    @Override
+    public int connectTimeoutMillis() {
+        return 0;
+    }
+
+    @Override
+    public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+        return this;
+    }
+
+    @Override
+    public int readTimeoutMillis() {
+        return 0;
+    }
+
+    @Override
+    public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+        return this;
+    }
+
+    @Override
+    public int writeTimeoutMillis() {
+        return 0;
+    }
+
+    @Override
+    public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+        return this;
+    }
+}
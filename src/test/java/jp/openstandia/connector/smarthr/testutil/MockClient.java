@@ -16,15 +16,19 @@
 package jp.openstandia.connector.smarthr.testutil;
 
 import jp.openstandia.connector.smarthr.SmartHRClient;
+import jp.openstandia.connector.smarthr.SmartHRFullScan;
 import jp.openstandia.connector.smarthr.SmartHRQueryHandler;
 import org.identityconnectors.framework.common.exceptions.AlreadyExistsException;
 import org.identityconnectors.framework.common.objects.Name;
 import org.identityconnectors.framework.common.objects.OperationOptions;
 import org.identityconnectors.framework.common.objects.Uid;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MockClient implements SmartHRClient {
 
@@ -32,8 +36,22 @@ public class MockClient implements SmartHRClient {
 
     public boolean closed = false;
 
+    // Objects returned by the list and get APIs
+    public final List<Crew> crews = new ArrayList<>();
+    public final List<Department> departments = new ArrayList<>();
+
+    // The called APIs, e.g. "getCrews", "getCrew(Uid)". The lookups can be called in parallel
+    public final List<String> calls = new CopyOnWriteArrayList<>();
+    public final List<Set<String>> fetchFields = new ArrayList<>();
+    public final List<SmartHRFullScan> scans = new ArrayList<>();
+
     public void init() {
         closed = false;
+        crews.clear();
+        departments.clear();
+        calls.clear();
+        fetchFields.clear();
+        scans.clear();
     }
 
     private MockClient() {
@@ -65,12 +83,14 @@ public class MockClient implements SmartHRClient {
 
     @Override
     public Crew getCrew(Uid uid, OperationOptions options, Set<String> attributesToGet) {
-        return null;
+        calls.add("getCrew(Uid)");
+        return crews.stream().filter(c -> c.id.equals(uid.getUidValue())).findFirst().orElse(null);
     }
 
     @Override
     public Crew getCrew(Name name, OperationOptions options, Set<String> attributesToGet) {
-        return null;
+        calls.add("getCrew(Name)");
+        return crews.stream().filter(c -> c.emp_code.equals(name.getNameValue())).findFirst().orElse(null);
     }
 
     @Override
@@ -85,8 +105,15 @@ public class MockClient implements SmartHRClient {
 
     @Override
     public int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> attributesToGet, int pageSize, int pageOffset) {
+        return getCrews(handler, options, attributesToGet, null, "emp_code", pageSize, pageOffset, null);
+    }
 
-        return pageSize;
+    @Override
+    public int getCrews(SmartHRQueryHandler<Crew> handler, OperationOptions options, Set<String> attributesToGet, Map<String, String> filters, String sort, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        calls.add("getCrews");
+        fetchFields.add(attributesToGet);
+        scans.add(scan);
+        return list(crews, handler, filters, pageSize, pageOffset);
     }
 
     @Override
@@ -96,12 +123,14 @@ public class MockClient implements SmartHRClient {
 
     @Override
     public Department getDepartment(Uid uid, OperationOptions options, Set<String> attributesToGet) {
-        return null;
+        calls.add("getDepartment(Uid)");
+        return departments.stream().filter(d -> d.id.equals(uid.getUidValue())).findFirst().orElse(null);
     }
 
     @Override
     public Department getDepartment(Name name, OperationOptions options, Set<String> attributesToGet) {
-        return null;
+        calls.add("getDepartment(Name)");
+        return departments.stream().filter(d -> d.code.equals(name.getNameValue())).findFirst().orElse(null);
     }
 
     @Override
@@ -116,8 +145,46 @@ public class MockClient implements SmartHRClient {
 
     @Override
     public int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> attributesToGet, int pageSize, int pageOffset) {
+        return getDepartments(handler, options, attributesToGet, null, "code", pageSize, pageOffset, null);
+    }
+
+    @Override
+    public int getDepartments(SmartHRQueryHandler<Department> handler, OperationOptions options, Set<String> attributesToGet, Map<String, String> filters, String sort, int pageSize, int pageOffset, SmartHRFullScan scan) {
+        calls.add("getDepartments");
+        fetchFields.add(attributesToGet);
+        scans.add(scan);
+        return list(departments, handler, filters, pageSize, pageOffset);
+    }
+
+    /**
+     * Pass the objects matched with the filters by exact match of the public field same as SmartHR list API.
+     * The objects in the requested page are passed if the offset (1-based) is specified.
+     */
+    private static <T> int list(List<T> objects, SmartHRQueryHandler<T> handler, Map<String, String> filters,
+                                int pageSize, int pageOffset) {
+        List<T> matched = new ArrayList<>();
+        for (T object : objects) {
+            if (filters == null || filters.entrySet().stream().allMatch(f -> f.getValue().equals(getField(object, f.getKey())))) {
+                matched.add(object);
+            }
+        }
+        int from = pageOffset > 0 ? pageOffset - 1 : 0;
+        int to = pageOffset > 0 ? Math.min(matched.size(), from + pageSize) : matched.size();
+        for (T object : matched.subList(Math.min(from, to), to)) {
+            if (!handler.handle(object)) {
+                break;
+            }
+        }
+        return matched.size();
+    }
 
-        return pageSize;
+    private static String getField(Object object, String name) {
+        try {
+            Object value = object.getClass().getField(name).get(object);
+            return value != null ? value.toString() : null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
     }
 
     @Override
@@ -146,7 +213,7 @@ public class MockClient implements SmartHRClient {
     }
 
     @Override
-    public int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> attributesToGet, int pageSize, int pageOffset) {
+    public int getEmploymentTypes(SmartHRQueryHandler<EmploymentType> handler, OperationOptions options, Set<String> attributesToGet, int pageSize, int pageOffset, SmartHRFullScan scan) {
         return 0;
     }
 
@@ -176,7 +243,7 @@ public class MockClient implements SmartHRClient {
     }
 
     @Override
-    public int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> attributesToGet, int pageSize, int pageOffset) {
+    public int getJobTitles(SmartHRQueryHandler<JobTitle> handler, OperationOptions options, Set<String> attributesToGet, int pageSize, int pageOffset, SmartHRFullScan scan) {
         return 0;
     }
 
@@ -191,7 +258,7 @@ public class MockClient implements SmartHRClient {
     }
 
     @Override
-    public int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
+    public int getCompanies(SmartHRQueryHandler<Company> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan) {
         return 0;
     }
 
@@ -206,7 +273,7 @@ public class MockClient implements SmartHRClient {
     }
 
     @Override
-    public int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset) {
+    public int getBizEstablishments(SmartHRQueryHandler<BizEstablishment> handler, OperationOptions options, Set<String> fetchFieldsSet, int pageSize, int pageOffset, SmartHRFullScan scan) {
         return 0;
     }
 }
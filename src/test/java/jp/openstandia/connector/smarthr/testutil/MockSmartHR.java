@@ -0,0 +1,146 @@
+/*
+ *  Copyright Nomura Research Institute, Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package jp.openstandia.connector.smarthr.testutil;
+
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interceptor which serves the list APIs of SmartHR from the canned objects instead of the network.
+ * The objects are paged by "page" and "per_page" query parameters with the same headers as SmartHR.
+ */
+public class MockSmartHR implements Interceptor {
+
+    private volatile int total;
+    private final Map<Integer, Long> delays = new ConcurrentHashMap<>();
+    private final Set<Integer> blocked = ConcurrentHashMap.newKeySet();
+    private String padding = "";
+
+    public final List<Integer> requestedPages = new CopyOnWriteArrayList<>();
+    public final List<Integer> requestedPageSizes = new CopyOnWriteArrayList<>();
+    public final Set<Integer> canceledPages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param total number of the objects. The i-th object (1-based) has id "i".
+     */
+    public MockSmartHR(int total) {
+        this.total = total;
+    }
+
+    public OkHttpClient newHttpClient() {
+        return new OkHttpClient.Builder()
+                .addInterceptor(this)
+                .build();
+    }
+
+    /**
+     * Change the number of the objects, e.g. to add the objects while the scan.
+     */
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * Add the padding to each object to make the response heavy.
+     */
+    public MockSmartHR padding(int bytesPerObject) {
+        StringBuilder sb = new StringBuilder(bytesPerObject);
+        for (int i = 0; i < bytesPerObject; i++) {
+            sb.append('x');
+        }
+        padding = sb.toString();
+        return this;
+    }
+
+    /**
+     * Delay the response of the page.
+     */
+    public MockSmartHR delay(int page, long millis) {
+        delays.put(page, millis);
+        return this;
+    }
+
+    /**
+     * Don't respond the page until the call is canceled.
+     */
+    public MockSmartHR block(int page) {
+        blocked.add(page);
+        return this;
+    }
+
+    public int maxRequestedPage() {
+        return requestedPages.stream().mapToInt(p -> p).max().orElse(0);
+    }
+
+    public static String id(int i) {
+        return String.valueOf(i);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HttpUrl url = chain.request().url();
+        int page = url.queryParameter("page") != null ? Integer.parseInt(url.queryParameter("page")) : 1;
+        int perPage = url.queryParameter("per_page") != null ? Integer.parseInt(url.queryParameter("per_page")) : 10;
+        requestedPages.add(page);
+        requestedPageSizes.add(perPage);
+
+        try {
+            if (blocked.contains(page)) {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (!chain.call().isCanceled() && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                if (chain.call().isCanceled()) {
+                    canceledPages.add(page);
+                }
+                throw new IOException("Canceled");
+            }
+            if (delays.containsKey(page)) {
+                Thread.sleep(delays.get(page));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = (page - 1) * perPage + 1; i <= Math.min(page * perPage, total); i++) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append(String.format("{\"id\":\"%s\",\"emp_code\":\"E%04d\",\"name\":\"name%d\"," +
+                    "\"departments\":[{\"id\":\"dept\",\"name\":\"Dept\"}],\"unknown\":{\"nested\":[1,2]},\"padding\":\"%s\"}",
+                    id(i), i, i, padding));
+        }
+        body.append(']');
+
+        return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .addHeader("x-total-count", String.valueOf(total))
+                .addHeader("x-page", String.valueOf(page))
+                .addHeader("x-per-page", String.valueOf(perPage))
+                .body(ResponseBody.create(body.toString(), MediaType.parse("application/json")))
+                .build();
+    }
+}